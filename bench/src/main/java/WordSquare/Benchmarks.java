@@ -0,0 +1,39 @@
+package WordSquare;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@code Benchmarks} runs the JMH benchmarks with the GC profiler always
+ * on, so every result comes with its allocation rate and bytes allocated
+ * per operation.  It accepts the usual JMH command-line options, e.g.
+ * {@code java -jar target/benchmarks.jar Search -f 1} runs only the search
+ * benchmarks in one fork.
+ * <p>
+ * Each benchmark is measured in throughput mode and in sample-time mode,
+ * which reports latency percentiles.  Results are also written to
+ * {@code jmh-result.json}, so runs before and after a change can be
+ * compared.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions cmd;
+        try {
+            cmd = new CommandLineOptions(args);
+        } catch (CommandLineOptionException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .build()).run();
+    }
+}
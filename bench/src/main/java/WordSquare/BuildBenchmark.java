@@ -0,0 +1,48 @@
+package WordSquare;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code BuildBenchmark} times building each dictionary backend and the
+ * pattern index from the word bank.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Benchmark
+    public DictionaryTernary dictionaryTernary() {
+        return new DictionaryTernary();
+    }
+
+    @Benchmark
+    public DictionaryTernary dictionaryTernaryFileOrder() {
+        return new DictionaryTernary(false);
+    }
+
+    @Benchmark
+    public DictionaryTernaryArray dictionaryTernaryArray() {
+        return new DictionaryTernaryArray();
+    }
+
+    @Benchmark
+    public DictionaryDawg dictionaryDawg() {
+        return new DictionaryDawg();
+    }
+
+    @Benchmark
+    public PatternIndex patternIndex() {
+        return new PatternIndex();
+    }
+}
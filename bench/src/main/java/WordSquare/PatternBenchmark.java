@@ -0,0 +1,63 @@
+package WordSquare;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@code PatternBenchmark} times pattern queries against
+ * {@code DictionaryTernary} and the {@code PatternIndex}, from a fully
+ * fixed pattern to one with every position a wildcard.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatternBenchmark {
+    // From no wildcards to five.
+    @Param({"heart", "hea.t", "h.a.t", "h...t", ".e..t", "....."})
+    public String pattern;
+
+    private WordDictionary dict;
+    private PatternIndex index;
+    private char[] chars;
+    private int[] ids;
+
+    @Setup
+    public void setUp() {
+        dict = new DictionaryTernary();
+        index = new PatternIndex(dict);
+        chars = pattern.toCharArray();
+        ids = new int[dict.getWordCount(pattern.length())];
+    }
+
+    @Benchmark
+    public void matchPattern(Blackhole bh) {
+        for (String word : dict.matchPattern(pattern)) {
+            bh.consume(word);
+        }
+    }
+
+    @Benchmark
+    public int matchIds() {
+        return dict.matchIds(chars, ids);
+    }
+
+    @Benchmark
+    public int indexCountPattern() {
+        return index.countPattern(chars);
+    }
+}
@@ -0,0 +1,45 @@
+package WordSquare;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@code PrefixBenchmark} times {@code DictionaryTernary.matchPrefix} for
+ * prefixes matching from thousands of words down to a few hundred.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrefixBenchmark {
+    @Param({"s", "st", "str"})
+    public String prefix;
+
+    private WordDictionary dict;
+
+    @Setup
+    public void setUp() {
+        dict = new DictionaryTernary();
+    }
+
+    @Benchmark
+    public void matchPrefix(Blackhole bh) {
+        for (String word : dict.matchPrefix(prefix)) {
+            bh.consume(word);
+        }
+    }
+}
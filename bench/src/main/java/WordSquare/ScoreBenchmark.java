@@ -0,0 +1,62 @@
+package WordSquare;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code ScoreBenchmark} times loading the score table and looking words
+ * up in it.  The table is loaded once per JVM, so loading is timed as a
+ * single shot in each of several fresh forks.
+ */
+public class ScoreBenchmark {
+
+    /**
+     * {@code Lookups} holds a loaded score table and the words to look up.
+     * Only {@code lookup} uses it, so {@code load} starts with the table
+     * still unloaded.
+     */
+    @State(Scope.Thread)
+    public static class Lookups {
+        private static final String[] WORDS = {"heart", "stream", "circle", "ember", "zzyzx", "cat"};
+
+        private Score score;
+        private int next;
+
+        @Setup
+        public void setUp() {
+            score = new Score();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public Score load() {
+        return new Score();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public long lookup(Lookups state) {
+        String word = Lookups.WORDS[state.next];
+        state.next = (state.next + 1) % Lookups.WORDS.length;
+        return state.score.getWordScore(word);
+    }
+}
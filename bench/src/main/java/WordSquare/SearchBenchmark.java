@@ -0,0 +1,64 @@
+package WordSquare;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code SearchBenchmark} times complete searches, from 3x3 to 6x6, on the
+ * default dictionary.  Each seed square is a list of {@code position:word}
+ * seeds with positions counted from 1, as in {@code WordSquareBatch}.  A
+ * seed that doesn't fit fails the benchmark, rather than silently timing a
+ * different search.  Each square is searched with no pruning beyond the
+ * dictionary, with forward checking, and with letter-set propagation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"1:cat", "1:ring", "1:heart", "1:circle", "3:stream", "1:planet 6:tender"})
+    public String seeds;
+
+    @Param({"none", "forward", "propagate"})
+    public String pruning;
+
+    private WordSquare ws;
+
+    @Setup
+    public void setUp() {
+        ws = new WordSquare();
+        // Time the search itself, not a replay of the last one.
+        ws.setReuseResults(false);
+        ws.setForwardChecking(pruning.equals("forward"));
+        ws.setPropagation(pruning.equals("propagate"));
+        for (String seed : seeds.split(" ")) {
+            int colon = seed.indexOf(':');
+            int pos = Integer.parseInt(seed.substring(0, colon)) - 1;
+            String word = seed.substring(colon + 1);
+            if (!ws.wordFits(word, pos)) {
+                throw new IllegalStateException("Seed " + seed + " doesn't fit in " + seeds);
+            }
+            ws.setWord(word, pos);
+        }
+    }
+
+    @Benchmark
+    public long buildAllSolutions() {
+        ws.clearSolutions();
+        ws.buildAllSolutions();
+        return ws.getNodeCount();
+    }
+}
@@ -0,0 +1,384 @@
+package WordSquare;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * {@code DictionaryDawg} holds the word bank in a minimized directed acyclic
+ * word graph: a trie in which every set of identical subtrees is stored
+ * once, so common suffixes such as {@code -ing} and {@code -ers} are shared
+ * as well as common prefixes.  It answers the same queries as
+ * {@code DictionaryTernary} in a fraction of the memory.
+ * <p>
+ * Each word length has its own start state, {@code roots[len]}, and every
+ * word of that length is a path of {@code len} edges from it to the final
+ * state 0, which has no edges.  State {@code s} owns the edges
+ * {@code firstEdge[s]} up to {@code firstEdge[s + 1]}, sorted by letter.
+ * Edge {@code e} is labelled {@code label[e]} and leads to
+ * {@code target[e]}.
+ * <p>
+ * The graph also numbers the words, so no word list is kept, at the cost
+ * of decoding a word on every {@code getWord}.
+ * {@code count[s]} is the number of paths from state {@code s} to the final
+ * state, and {@code before[e]} the number of words reached through the
+ * edges of the same state that come before {@code e}.  Words are numbered
+ * in sorted order, so a word's ID is the sum of {@code before} over its
+ * path, the words under a prefix have consecutive IDs, and a word is read
+ * back from its ID by walking down from the root.  A pattern whose
+ * remaining letters are all wildcards is answered from {@code count} without
+ * walking any further.
+ * <p>
+ * The graph is only written in the constructor and is safe for concurrent
+ * readers.
+ */
+public class DictionaryDawg implements WordDictionary {
+    // The state every word ends at.
+    private static final int FINAL = 0;
+    // The root of a length with no words.
+    private static final int NONE = -1;
+
+    private final int[] firstEdge;
+    private final int[] count;
+    private final char[] label;
+    private final int[] target;
+    private final int[] before;
+    private final int[] roots;
+
+    /**
+     * Build the minimized graph from the word bank.
+     */
+    public DictionaryDawg() {
+        String[][] words = WordBank.byLength(WordBank.loadSorted());
+        Builder builder = new Builder();
+        roots = new int[WordBank.MAX_LENGTH + 1];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            roots[len] = (words[len].length == 0) ? NONE :
+                    builder.build(words[len], 0, words[len].length, 0);
+        }
+        int states = builder.states;
+        int edges = builder.firstEdge[states];
+        firstEdge = Arrays.copyOf(builder.firstEdge, states + 1);
+        count = Arrays.copyOf(builder.count, states);
+        label = Arrays.copyOf(builder.label, edges);
+        target = Arrays.copyOf(builder.target, edges);
+        before = Arrays.copyOf(builder.before, edges);
+    }
+
+    /**
+     * Get the number of states in the graph.
+     * @return Returns the state count, the final state included.
+     */
+    public int getStateCount() {
+        return count.length;
+    }
+
+    /**
+     * Get the number of edges in the graph.
+     * @return Returns the edge count.
+     */
+    public int getEdgeCount() {
+        return label.length;
+    }
+
+    // Get the start state of a length, or NONE.
+    private int root(int len) {
+        return (len > 0 && len < roots.length) ? roots[len] : NONE;
+    }
+
+    // Find the edge of a state with a given letter, or -1.
+    private int edge(int s, char c) {
+        int lo = firstEdge[s];
+        int hi = firstEdge[s + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char v = label[mid];
+            if (v < c) lo = mid + 1;
+            else if (v > c) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // Get the position after the last non-wildcard of a pattern.
+    private static int fixedEnd(char[] pattern) {
+        int end = pattern.length;
+        while (end > 0 && pattern[end - 1] == '.') end--;
+        return end;
+    }
+
+    /*--------------------------------------
+    *
+    * Pattern-match methods.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPattern(String pattern) {
+        HashSet<String> matches = new HashSet<>();
+        int root = root(pattern.length());
+        if (root != NONE) match(pattern, root, 0, new char[pattern.length()], matches);
+        return matches;
+    }
+
+    private void match(String pattern, int s, int pos, char[] buf, HashSet<String> matches) {
+        if (pos == buf.length) {
+            matches.add(new String(buf));
+            return;
+        }
+        char c = pattern.charAt(pos);
+        if (c == '.') {
+            for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+                buf[pos] = label[e];
+                match(pattern, target[e], pos + 1, buf, matches);
+            }
+        } else {
+            int e = edge(s, c);
+            if (e < 0) return;
+            buf[pos] = c;
+            match(pattern, target[e], pos + 1, buf, matches);
+        }
+    }
+
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        int root = root(pattern.length);
+        return (root != NONE) ? matchIds(pattern, fixedEnd(pattern), root, 0, 0, ids, 0) : 0;
+    }
+
+    // Edges are visited in letter order, so IDs come out sorted.
+    private int matchIds(char[] pattern, int end, int s, int pos, int id, int[] ids, int n) {
+        if (pos >= end) {
+            // Every word below s matches, and their IDs are consecutive.
+            for (int i = 0; i < count[s]; i++) {
+                ids[n++] = id + i;
+            }
+            return n;
+        }
+        char c = pattern[pos];
+        if (c == '.') {
+            for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+                n = matchIds(pattern, end, target[e], pos + 1, id + before[e], ids, n);
+            }
+            return n;
+        }
+        int e = edge(s, c);
+        return (e < 0) ? n : matchIds(pattern, end, target[e], pos + 1, id + before[e], ids, n);
+    }
+
+    @Override
+    public int getWordCount(int len) {
+        int root = root(len);
+        return (root != NONE) ? count[root] : 0;
+    }
+
+    /**
+     * Read a word back from its ID.  No word list is kept, so each call
+     * walks the graph with a binary search per letter and builds a new
+     * {@code String}.  Callers that look words up often, such as the
+     * search, should keep their own word list; {@code WordSquare} reads
+     * words from its {@code PatternIndex}.
+     * @param len The word length.
+     * @param id The word's ID among words of that length.
+     * @return Returns the word.
+     */
+    @Override
+    public String getWord(int len, int id) {
+        if (id < 0 || id >= getWordCount(len)) {
+            throw new IndexOutOfBoundsException("No word " + id + " of length " + len);
+        }
+        char[] buf = new char[len];
+        int s = roots[len];
+        for (int pos = 0; pos < len; pos++) {
+            // Take the last edge whose words start at or before id.
+            int lo = firstEdge[s];
+            int hi = firstEdge[s + 1] - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (before[mid] <= id) lo = mid;
+                else hi = mid - 1;
+            }
+            buf[pos] = label[lo];
+            id -= before[lo];
+            s = target[lo];
+        }
+        return new String(buf);
+    }
+
+    @Override
+    public boolean hasMatch(String pattern) {
+        char[] chars = pattern.toCharArray();
+        int root = root(chars.length);
+        return root != NONE && exists(chars, fixedEnd(chars), root, 0);
+    }
+
+    private boolean exists(char[] pattern, int end, int s, int pos) {
+        // Every state has a path to the final state, so any completion
+        // of the fixed letters is a word.
+        while (pos < end) {
+            char c = pattern[pos];
+            if (c == '.') {
+                for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+                    if (exists(pattern, end, target[e], pos + 1)) return true;
+                }
+                return false;
+            }
+            int e = edge(s, c);
+            if (e < 0) return false;
+            s = target[e];
+            pos++;
+        }
+        return true;
+    }
+
+    @Override
+    public int countPattern(String pattern) {
+        char[] chars = pattern.toCharArray();
+        int root = root(chars.length);
+        return (root != NONE) ? count(chars, fixedEnd(chars), root, 0) : 0;
+    }
+
+    private int count(char[] pattern, int end, int s, int pos) {
+        while (pos < end) {
+            char c = pattern[pos];
+            if (c == '.') {
+                int total = 0;
+                for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+                    total += count(pattern, end, target[e], pos + 1);
+                }
+                return total;
+            }
+            int e = edge(s, c);
+            if (e < 0) return 0;
+            s = target[e];
+            pos++;
+        }
+        return count[s];
+    }
+
+    /*--------------------------------------
+    *
+    * The following prefix-match methods are not required for operation of WordSquare.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPrefix(String prefix) {
+        HashSet<String> found = new HashSet<>();
+        char[] buf = Arrays.copyOf(prefix.toCharArray(), WordBank.MAX_LENGTH);
+        for (int len = Math.max(prefix.length(), 1); len < roots.length; len++) {
+            int s = find(prefix, root(len));
+            if (s != NONE) fillSet(s, prefix.length(), len, buf, found);
+        }
+        if (found.size() == 0) return null;
+        return found;
+    }
+
+    /**
+     * Test whether any word bank word starts with a given prefix, without
+     * listing the words.
+     * @param prefix The prefix to test.  No wildcards are allowed.
+     * @return Returns {@code true} if at least one word has the prefix.
+     */
+    public boolean hasCompletion(String prefix) {
+        for (int len = Math.max(prefix.length(), 1); len < roots.length; len++) {
+            if (find(prefix, root(len)) != NONE) return true;
+        }
+        return false;
+    }
+
+    // Follow a prefix from a start state.
+    private int find(String prefix, int s) {
+        for (int pos = 0; pos < prefix.length() && s != NONE; pos++) {
+            int e = edge(s, prefix.charAt(pos));
+            s = (e < 0) ? NONE : target[e];
+        }
+        return s;
+    }
+
+    private void fillSet(int s, int pos, int len, char[] buf, HashSet<String> found) {
+        if (pos == len) {
+            found.add(new String(buf, 0, len));
+            return;
+        }
+        for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+            buf[pos] = label[e];
+            fillSet(target[e], pos + 1, len, buf, found);
+        }
+    }
+
+    /**
+     * {@code Builder} builds the graph bottom-up, so each state is made
+     * after every state below it and can be looked up by its edges.
+     */
+    private static class Builder {
+        private int[] firstEdge = new int[1024];
+        private int[] count = new int[1024];
+        private char[] label = new char[1024];
+        private int[] target = new int[1024];
+        private int[] before = new int[1024];
+        // The state with each list of edges, keyed by letter and target.
+        private final HashMap<String, Integer> register = new HashMap<String, Integer>();
+        // State 0 is FINAL, with no edges and one path: the empty one.
+        private int states = 1;
+
+        Builder() {
+            count[FINAL] = 1;
+        }
+
+        /**
+         * Build the state reached by a shared prefix.
+         * @param words Sorted words of one length.
+         * @param lo The first word with the prefix.
+         * @param hi One past the last word with the prefix.
+         * @param pos The prefix length.
+         * @return Returns the state, an existing one if one has the same
+         * edges.
+         */
+        int build(String[] words, int lo, int hi, int pos) {
+            if (pos == words[lo].length()) return FINAL;
+            // Each edge is its letter, then its target as two chars.
+            StringBuilder key = new StringBuilder();
+            for (int i = lo; i < hi; ) {
+                char c = words[i].charAt(pos);
+                int j = i + 1;
+                while (j < hi && words[j].charAt(pos) == c) j++;
+                int child = build(words, i, j, pos + 1);
+                key.append(c).append((char) (child >>> 16)).append((char) child);
+                i = j;
+            }
+            String edges = key.toString();
+            Integer existing = register.get(edges);
+            if (existing != null) return existing;
+            int s = newState(edges);
+            register.put(edges, s);
+            return s;
+        }
+
+        private int newState(String edges) {
+            int n = edges.length() / 3;
+            if (states + 1 == firstEdge.length) {
+                firstEdge = Arrays.copyOf(firstEdge, firstEdge.length * 2);
+                count = Arrays.copyOf(count, firstEdge.length);
+            }
+            int first = firstEdge[states];
+            if (first + n > label.length) {
+                int capacity = Math.max(label.length * 2, first + n);
+                label = Arrays.copyOf(label, capacity);
+                target = Arrays.copyOf(target, capacity);
+                before = Arrays.copyOf(before, capacity);
+            }
+            int words = 0;
+            for (int i = 0; i < n; i++) {
+                int e = first + i;
+                label[e] = edges.charAt(3 * i);
+                target[e] = (edges.charAt(3 * i + 1) << 16) | edges.charAt(3 * i + 2);
+                before[e] = words;
+                words += count[target[e]];
+            }
+            count[states] = words;
+            firstEdge[states + 1] = first + n;
+            return states++;
+        }
+    }
+}
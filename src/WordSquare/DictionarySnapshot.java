@@ -0,0 +1,399 @@
+package WordSquare;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * {@code DictionarySnapshot} answers queries from prebuilt ternary search
+ * trees, one per word length, saved in a binary file.  The file is
+ * memory-mapped and queried in place, so opening it neither parses the
+ * word bank nor creates an object per node.
+ * <p>
+ * The file holds, in big-endian order:
+ * <ul>
+ *     <li>a header: {@code MAGIC}, {@code VERSION}, the word bank checksum,
+ *     the node count (slot 0 included), the word count of each length
+ *     from 0 to {@code WordBank.MAX_LENGTH}, and the root node of each
+ *     length's tree, or 0 for none</li>
+ *     <li>the nodes, laid out as in {@code DictionaryTernaryArray}, each as
+ *     the five {@code int}s {@code value, smaller, bigger, equal, id}, where
+ *     {@code id} is -1 for a node that doesn't end a word</li>
+ *     <li>the words of each length in ID order, as fixed-width
+ *     {@code char}s</li>
+ * </ul>
+ * A file written by a different version, or from a different word bank,
+ * is rebuilt by {@code open}.
+ * <p>
+ * The mapped buffers are only read with absolute gets, which don't change
+ * buffer state, so one instance is safe for concurrent readers.
+ */
+public class DictionarySnapshot implements WordDictionary {
+    private static final int MAGIC = 0x57534454; // "WSDT"
+    private static final int VERSION = 2;
+    // The header size in bytes.
+    private static final int HEADER = 4 + 4 + 8 + 4 + 2 * 4 * (WordBank.MAX_LENGTH + 1);
+
+    // The node fields, as offsets into a node's record.
+    private static final int VALUE = 0;
+    private static final int SMALLER = 1;
+    private static final int BIGGER = 2;
+    private static final int EQUAL = 3;
+    private static final int ID = 4;
+    private static final int FIELDS = 5;
+
+    private static final int NONE = 0;
+
+    private final IntBuffer nodes;
+    // The words of each length, len chars per word, indexed by word ID.
+    private final CharBuffer[] words;
+    private final int[] wordCounts;
+    // The root of each length's tree, or NONE.
+    private final int[] roots;
+    // The number of node slots, including the unused slot 0.
+    private final int size;
+
+    /**
+     * Get the default snapshot file, in the {@code .wordsquare} directory
+     * under the user's home directory.
+     * @return Returns the default snapshot file.
+     */
+    public static File defaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".wordsquare"),
+                "dictionary.snapshot");
+    }
+
+    /**
+     * Open the snapshot in the default file, writing it first if it is
+     * missing or stale.
+     * @return Returns the opened snapshot.
+     * @throws IOException If the snapshot can't be written or read.
+     */
+    public static DictionarySnapshot open() throws IOException {
+        return open(defaultFile());
+    }
+
+    /**
+     * Open a snapshot file, writing it first if it is missing, unreadable,
+     * from another version or built from a different word bank.
+     * @param file The snapshot file.
+     * @return Returns the opened snapshot.
+     * @throws IOException If the snapshot can't be written or read.
+     */
+    public static DictionarySnapshot open(File file) throws IOException {
+        long checksum = WordBank.checksum();
+        if (file.isFile()) {
+            try {
+                return new DictionarySnapshot(map(file), checksum);
+            } catch (IOException ex) {
+                // Stale or damaged.  Fall through and rebuild it.
+            }
+        }
+        write(file, checksum);
+        return new DictionarySnapshot(map(file), checksum);
+    }
+
+    /**
+     * Build the snapshot ahead of time, e.g. as a build or install step.
+     * @param args An optional snapshot file.  The default file is used if
+     *             none is given.
+     * @throws IOException If the snapshot can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = (args.length > 0) ? new File(args[0]) : defaultFile();
+        write(file, WordBank.checksum());
+        System.out.println("Wrote " + file + " (" + file.length() + " bytes)");
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Build the tree from the word bank and write it to a snapshot file.
+     * The file is written under a temporary name and then moved into place,
+     * so readers never see a partial file.
+     * @param file The snapshot file.
+     * @param checksum The word bank checksum to record.
+     * @throws IOException If the file can't be written.
+     */
+    private static void write(File file, long checksum) throws IOException {
+        DictionaryTernaryArray dict = new DictionaryTernaryArray();
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        File temp = File.createTempFile("dictionary", ".tmp", dir);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(checksum);
+                out.writeInt(dict.getNodeCount() + 1);
+                for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+                    out.writeInt(dict.getWordCount(len));
+                }
+                for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+                    out.writeInt(dict.getRoot(len));
+                }
+                dict.writeNodes(out);
+                for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+                    for (int id = 0; id < dict.getWordCount(len); id++) {
+                        out.writeChars(dict.getWord(len, id));
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Wrap a mapped snapshot, checking its header.
+     * @param buf The mapped file.
+     * @param checksum The current word bank checksum.
+     * @throws IOException If the snapshot is damaged, from another version
+     * or from a different word bank.
+     */
+    private DictionarySnapshot(ByteBuffer buf, long checksum) throws IOException {
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a dictionary snapshot");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Snapshot version " + buf.getInt(4));
+        }
+        if (buf.getLong(8) != checksum) {
+            throw new IOException("Snapshot is of a different word bank");
+        }
+        size = buf.getInt(16);
+        wordCounts = new int[WordBank.MAX_LENGTH + 1];
+        roots = new int[WordBank.MAX_LENGTH + 1];
+        long expected = HEADER + 4L * FIELDS * size;
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            wordCounts[len] = buf.getInt(20 + 4 * len);
+            roots[len] = buf.getInt(20 + 4 * (WordBank.MAX_LENGTH + 1) + 4 * len);
+            expected += 2L * len * wordCounts[len];
+            if (roots[len] < 0 || roots[len] >= Math.max(size, 1)) {
+                throw new IOException("Snapshot is damaged");
+            }
+        }
+        if (size < 1 || expected != buf.capacity()) {
+            throw new IOException("Snapshot is truncated");
+        }
+
+        // Slice views of each region.  Nothing is copied.
+        buf.position(HEADER);
+        nodes = buf.slice().asIntBuffer();
+        int offset = HEADER + 4 * FIELDS * size;
+        words = new CharBuffer[WordBank.MAX_LENGTH + 1];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            buf.position(offset);
+            words[len] = buf.slice().asCharBuffer();
+            offset += 2 * len * wordCounts[len];
+        }
+    }
+
+    private int root(int len) {
+        return (len < roots.length) ? roots[len] : NONE;
+    }
+
+    private int field(int nd, int field) {
+        return nodes.get(nd * FIELDS + field);
+    }
+
+    private char value(int nd) {
+        return (char) nodes.get(nd * FIELDS + VALUE);
+    }
+
+    /*--------------------------------------
+    *
+    * Pattern-match methods.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public int getWordCount(int len) {
+        return (len < wordCounts.length) ? wordCounts[len] : 0;
+    }
+
+    @Override
+    public String getWord(int len, int id) {
+        char[] buf = new char[len];
+        int start = id * len;
+        for (int i = 0; i < len; i++) {
+            buf[i] = words[len].get(start + i);
+        }
+        return new String(buf);
+    }
+
+    @Override
+    public Iterable<String> matchPattern(String pattern) {
+        int len = pattern.length();
+        ArrayList<String> matches = new ArrayList<String>();
+        int[] ids = new int[getWordCount(len)];
+        int n = matchIds(pattern.toCharArray(), ids);
+        for (int i = 0; i < n; i++) {
+            matches.add(getWord(len, ids[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        int root = root(pattern.length);
+        return (root != NONE) ? matchIds(pattern, root, 0, ids, 0) : 0;
+    }
+
+    // Visit the subtree in order, so IDs come out sorted.
+    private int matchIds(char[] pattern, int nd, int pos, int[] ids, int n) {
+        int last = pattern.length - 1;
+        while (nd != NONE) {
+            char c = pattern[pos];
+            char v = value(nd);
+            if (c == '.') {
+                n = matchIds(pattern, field(nd, SMALLER), pos, ids, n);
+                if (pos == last) {
+                    int id = field(nd, ID);
+                    if (id >= 0) ids[n++] = id;
+                } else {
+                    n = matchIds(pattern, field(nd, EQUAL), pos + 1, ids, n);
+                }
+                nd = field(nd, BIGGER);
+            } else if (c == v) {
+                if (pos == last) {
+                    int id = field(nd, ID);
+                    if (id >= 0) ids[n++] = id;
+                    return n;
+                }
+                nd = field(nd, EQUAL);
+                pos++;
+            } else if (c < v) {
+                nd = field(nd, SMALLER);
+            } else {
+                nd = field(nd, BIGGER);
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean hasMatch(String pattern) {
+        int root = root(pattern.length());
+        return root != NONE && exists(pattern, root, 0);
+    }
+
+    private boolean exists(String pattern, int nd, int pos) {
+        int last = pattern.length() - 1;
+        while (nd != NONE) {
+            char c = pattern.charAt(pos);
+            char v = value(nd);
+            if (c == '.') {
+                if (exists(pattern, field(nd, SMALLER), pos)) return true;
+                if (pos == last) {
+                    if (field(nd, ID) >= 0) return true;
+                } else if (exists(pattern, field(nd, EQUAL), pos + 1)) {
+                    return true;
+                }
+                nd = field(nd, BIGGER);
+            } else if (c == v) {
+                if (pos == last) return field(nd, ID) >= 0;
+                nd = field(nd, EQUAL);
+                pos++;
+            } else if (c < v) {
+                nd = field(nd, SMALLER);
+            } else {
+                nd = field(nd, BIGGER);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int countPattern(String pattern) {
+        int root = root(pattern.length());
+        return (root != NONE) ? count(pattern, root, 0) : 0;
+    }
+
+    private int count(String pattern, int nd, int pos) {
+        int last = pattern.length() - 1;
+        int total = 0;
+        while (nd != NONE) {
+            char c = pattern.charAt(pos);
+            char v = value(nd);
+            if (c == '.') {
+                total += count(pattern, field(nd, SMALLER), pos);
+                if (pos == last) {
+                    if (field(nd, ID) >= 0) total++;
+                } else {
+                    total += count(pattern, field(nd, EQUAL), pos + 1);
+                }
+                nd = field(nd, BIGGER);
+            } else if (c == v) {
+                if (pos == last) return (field(nd, ID) >= 0) ? total + 1 : total;
+                nd = field(nd, EQUAL);
+                pos++;
+            } else if (c < v) {
+                nd = field(nd, SMALLER);
+            } else {
+                nd = field(nd, BIGGER);
+            }
+        }
+        return total;
+    }
+
+    /*--------------------------------------
+    *
+    * The following prefix-match methods are not required for operation of WordSquare.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPrefix(String prefix) {
+        HashSet<String> found = new HashSet<>();
+        for (int len = prefix.length(); len <= WordBank.MAX_LENGTH; len++) {
+            // Words sharing the prefix are contiguous in ID order.
+            int id = lowerBound(len, prefix);
+            while (id < wordCounts[len] && getWord(len, id).startsWith(prefix)) {
+                found.add(getWord(len, id));
+                id++;
+            }
+        }
+        if (found.size() == 0) return null;
+        return found;
+    }
+
+    // Find the first ID of the given length whose word is not less than key.
+    private int lowerBound(int len, String key) {
+        int lo = 0;
+        int hi = wordCounts[len];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (getWord(len, mid).compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
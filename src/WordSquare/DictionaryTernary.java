@@ -1,80 +1,184 @@
 package WordSquare;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
-public class DictionaryTernary {
-    private Node head;
+/**
+ * {@code DictionaryTernary} holds the word bank in ternary search trees and
+ * answers pattern and prefix queries against them.  Each word length has
+ * its own tree, so a pattern query only walks the tree of words of the
+ * pattern's length.
+ * <p>
+ * The trees are built entirely in the constructor and never modified
+ * afterwards; every query method only reads nodes and keeps its working
+ * state on the stack or in objects it allocates itself.  Because
+ * {@code heads} is {@code final}, the Java memory model guarantees that any
+ * thread that sees a constructed {@code DictionaryTernary} also sees the
+ * whole tree as it was at the end of the constructor.  A single instance can
+ * therefore be queried by any number of threads at once without locking.
+ * <p>
+ * Besides {@code .} patterns, the trees answer letter-set patterns, which
+ * allow a set of letters at each position, such as {@code [st][aeiou]...}.
+ * Letters are numbered alphabetically, as in {@code PatternIndex}, and each
+ * node records the letters of its {@code smaller}/{@code bigger} subtree,
+ * so a query skips every sibling subtree holding no allowed letter.
+ */
+public class DictionaryTernary implements WordDictionary {
+    // The head of each length's tree.  A head holds no letter; the tree
+    // hangs from its bigger child.
+    private final Node[] heads;
+    // The words of each length, indexed by word ID.
+    private final String[][] words;
+    // Maps a character to its letter number, or -1 if no word uses it.
+    private final int[] letterNumbers;
 
+    /**
+     * Build a balanced tree from the word bank.
+     */
     public DictionaryTernary() {
-        head = new Node();
-
-        try {
-            /* COULD INCREASE EFFICIENCY by randomizing the word bank
-             * before insert.  Ordered input is worst case for tree structures. */
+        this(true);
+    }
 
-            // Open word bank file as a stream.
-            InputStreamReader ir = new InputStreamReader(
-                    getClass().getResourceAsStream("resources/wordBank.csv"));
-            BufferedReader reader = new BufferedReader(ir);
+    /**
+     * Build a tree from the word bank.
+     * @param balanced {@code true} to insert the words median-first, which
+     *                 keeps the {@code smaller}/{@code bigger} chains short.
+     *                 {@code false} to insert them in file order, which is
+     *                 alphabetical and so the worst case for a tree.
+     */
+    public DictionaryTernary(boolean balanced) {
+        List<String> sorted = WordBank.loadSorted();
+        words = WordBank.byLength(sorted);
+        letterNumbers = WordBank.letterNumbers(sorted);
+        heads = new Node[WordBank.MAX_LENGTH + 1];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            heads[len] = new Node();
+            if (balanced) {
+                for (String word : WordBank.medianOrder(Arrays.asList(words[len]))) {
+                    insert(word);
+                }
+            }
+        }
+        if (!balanced) {
+            for (String word : WordBank.load()) {
+                insert(word);
+            }
+        }
+        for (Node head : heads) {
+            markLetters(head);
+        }
+    }
 
-            // Initialize local variable with first line from the stream.
-            String workingLine = reader.readLine();
+    // Get the head of a length's tree, or null if the length is too long.
+    private Node head(int len) {
+        return (len < heads.length) ? heads[len] : null;
+    }
 
-            do {
-                workingLine = workingLine.trim().toLowerCase();
-                if ((workingLine.length() > 2) &&
-                (workingLine.length() < 7) ){
-                    insert(workingLine, head, 0);
-                }
-                workingLine = reader.readLine();
-            } while (workingLine != null);
-        } catch (IOException ex) { ex.printStackTrace(); }
+    // Number each node's letter and collect the letters of each sibling
+    // subtree, returning those of nd's.
+    private long markLetters(Node nd) {
+        if (nd == null) return 0;
+        long letters = 0;
+        if (nd.value != 0) {
+            nd.letter = (byte) letterOf(nd.value);
+            if (nd.letter >= 0) letters = 1L << nd.letter;
+        }
+        markLetters(nd.equal);
+        letters |= markLetters(nd.smaller) | markLetters(nd.bigger);
+        nd.letters = letters;
+        return letters;
     }
 
-    private void insert(String word, Node nd, int pos) {
-        // Get test char
-        char c = word.charAt(pos);
-        if (c == nd.value) {
-            if (pos == word.length() - 1) {
-                nd.valid = true;
-                return;
-            } else {
-                if (nd.equal != null) insert(word, nd.equal, ++pos);
-                else {
+    private void insert(String word) {
+        Node nd = heads[word.length()];
+        int pos = 0;
+        while (true) {
+            // Get test char
+            char c = word.charAt(pos);
+            if (c == nd.value) {
+                if (pos == word.length() - 1) {
+                    nd.valid = true;
+                    nd.id = Arrays.binarySearch(words[word.length()], word);
+                    return;
+                }
+                pos++;
+                if (nd.equal == null) {
                     nd.equal = new Node();
-                    nd.equal.value = word.charAt(pos + 1);
-                    insert(word, nd.equal, ++pos);
+                    nd.equal.value = word.charAt(pos);
                 }
+                nd = nd.equal;
+            } else if (c < nd.value) {
+                if (nd.smaller == null) {
+                    nd.smaller = new Node();
+                    nd.smaller.value = c;
+                }
+                nd = nd.smaller;
+            } else { // if (c > nd.value)
+                if (nd.bigger == null) {
+                    nd.bigger = new Node();
+                    nd.bigger.value = c;
+                }
+                nd = nd.bigger;
             }
-        } else if (c < nd.value) {
-            if (nd.smaller != null) insert(word, nd.smaller, pos);
-            else {
-                nd.smaller = new Node();
-                nd.smaller.value = c;
-                insert(word, nd.smaller, pos);
-            }
-        } else { // if (c > nd.value)
-            if (nd.bigger != null) insert(word, nd.bigger, pos);
-            else {
-                nd.bigger = new Node();
-                nd.bigger.value = c;
-                insert(word, nd.bigger, pos);
-            }
         }
     }
 
+    /*--------------------------------------
+    *
+    * Tree shape statistics.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Get the depth of the deepest word in the tree.
+     * @return Returns the greatest number of nodes visited to reach the
+     * end of any word.
+     */
+    public int getMaxDepth() {
+        long[] stats = new long[3];
+        for (Node head : heads) {
+            measure(head, 1, stats);
+        }
+        return (int) stats[2];
+    }
+
+    /**
+     * Get the average depth of the words in the tree.
+     * @return Returns the average number of nodes visited to reach the end
+     * of a word.
+     */
+    public double getAveragePathLength() {
+        long[] stats = new long[3];
+        for (Node head : heads) {
+            measure(head, 1, stats);
+        }
+        return (stats[0] == 0) ? 0 : (double) stats[1] / stats[0];
+    }
+
+    // Tally word count, total depth and maximum depth into stats.
+    private void measure(Node nd, int depth, long[] stats) {
+        if (nd.valid) {
+            stats[0]++;
+            stats[1] += depth;
+            if (depth > stats[2]) stats[2] = depth;
+        }
+        if (nd.smaller != null) measure(nd.smaller, depth + 1, stats);
+        if (nd.bigger != null) measure(nd.bigger, depth + 1, stats);
+        if (nd.equal != null) measure(nd.equal, depth + 1, stats);
+    }
+
     /***
      * A method to find all word bank words that match a given pattern.
      * @param pattern A {@code String} in which {@code .} characters are treated
      *                as wildcards.
      * @return Returns an {@code Iterable} list of word bank words matching the given pattern.
      */
+    @Override
     public Iterable<String> matchPattern(String pattern) {
         HashSet<String> matches = new HashSet<>();
-        match(pattern, head, 0, new StringBuilder(), matches);
+        Node head = head(pattern.length());
+        if (head != null) match(pattern, head, 0, new StringBuilder(), matches);
         return matches;
     }
 
@@ -107,27 +211,290 @@ public class DictionaryTernary {
         else if (nd.equal != null) match(word, nd.equal, ++pos, sb, matches);
     }
 
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        Node head = head(pattern.length);
+        return (head != null) ? matchIds(pattern, head, 0, ids, 0) : 0;
+    }
+
+    // Visit the subtree in order, so IDs come out sorted.
+    private int matchIds(char[] pattern, Node nd, int pos, int[] ids, int n) {
+        char c = pattern[pos];
+        boolean wild = (c == '.');
+        if ((wild || c < nd.value) && nd.smaller != null) {
+            n = matchIds(pattern, nd.smaller, pos, ids, n);
+        }
+        if (wild || c == nd.value) {
+            if (pos == pattern.length - 1) {
+                if (nd.valid) ids[n++] = nd.id;
+            } else if (nd.equal != null) {
+                n = matchIds(pattern, nd.equal, pos + 1, ids, n);
+            }
+        }
+        if ((wild || c > nd.value) && nd.bigger != null) {
+            n = matchIds(pattern, nd.bigger, pos, ids, n);
+        }
+        return n;
+    }
+
+    @Override
+    public int getWordCount(int len) {
+        return (len < words.length) ? words[len].length : 0;
+    }
+
+    @Override
+    public String getWord(int len, int id) {
+        return words[len][id];
+    }
+
+    /***
+     * A method to test whether any word bank word matches a given pattern.
+     * The search stops at the first match, so this is much cheaper than
+     * {@code matchPattern} when only existence matters.
+     * @param pattern A {@code String} in which {@code .} characters are treated
+     *                as wildcards.
+     * @return Returns {@code true} if at least one word bank word matches the
+     * given pattern.  Otherwise, returns {@code false}.
+     */
+    @Override
+    public boolean hasMatch(String pattern) {
+        Node head = head(pattern.length());
+        return head != null && exists(pattern, head, 0);
+    }
+
+    private boolean exists(String word, Node nd, int pos) {
+        char c = word.charAt(pos);
+        if (c == '.') {
+            if (nd.smaller != null && exists(word, nd.smaller, pos)) return true;
+            if (nd.bigger != null && exists(word, nd.bigger, pos)) return true;
+            if (pos == word.length() - 1) return nd.valid;
+            return nd.equal != null && exists(word, nd.equal, pos + 1);
+        }
+        if (c == nd.value) {
+            if (pos == word.length() - 1) return nd.valid;
+            return nd.equal != null && exists(word, nd.equal, pos + 1);
+        } else if (c < nd.value) {
+            return nd.smaller != null && exists(word, nd.smaller, pos);
+        } else { // if (c > nd.value)
+            return nd.bigger != null && exists(word, nd.bigger, pos);
+        }
+    }
+
+    /***
+     * A method to count the word bank words that match a given pattern
+     * without collecting them.
+     * @param pattern A {@code String} in which {@code .} characters are treated
+     *                as wildcards.
+     * @return Returns the number of word bank words matching the given pattern.
+     */
+    @Override
+    public int countPattern(String pattern) {
+        Node head = head(pattern.length());
+        return (head != null) ? count(pattern, head, 0) : 0;
+    }
+
+    private int count(String word, Node nd, int pos) {
+        char c = word.charAt(pos);
+        if (c == '.') {
+            int total = 0;
+            if (nd.smaller != null) total += count(word, nd.smaller, pos);
+            if (nd.bigger != null) total += count(word, nd.bigger, pos);
+            if (pos == word.length() - 1) {
+                if (nd.valid) total++;
+            } else if (nd.equal != null) total += count(word, nd.equal, pos + 1);
+            return total;
+        }
+        if (c == nd.value) {
+            if (pos == word.length() - 1) return nd.valid ? 1 : 0;
+            return (nd.equal != null) ? count(word, nd.equal, pos + 1) : 0;
+        } else if (c < nd.value) {
+            return (nd.smaller != null) ? count(word, nd.smaller, pos) : 0;
+        } else { // if (c > nd.value)
+            return (nd.bigger != null) ? count(word, nd.bigger, pos) : 0;
+        }
+    }
+
+    /*--------------------------------------
+    *
+    * Letter-set pattern methods.  A letter set is a long with bit n set for
+    * letter n, so they only work with at most 64 distinct letters.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Check whether letter sets can be used with this dictionary.
+     * @return Returns {@code true} if the words use at most 64 distinct
+     * letters.
+     */
+    public boolean hasLetterSets() {
+        int letters = 0;
+        for (int number : letterNumbers) {
+            if (number >= 0) letters++;
+        }
+        return letters <= 64;
+    }
+
+    /**
+     * Get the number of a letter, i.e. its bit in a letter set.
+     * @param c The letter.
+     * @return Returns the letter number, or -1 if no word uses the letter.
+     */
+    public int letterOf(char c) {
+        return (c < letterNumbers.length) ? letterNumbers[c] : -1;
+    }
+
+    /**
+     * Turn a pattern with bracketed letter classes into letter sets.  Each
+     * position is a letter, a {@code .} for any letter, or a list of letters
+     * in brackets, e.g. {@code [st][aeiou]...}.  Letters no word uses are
+     * left out of the sets.
+     * @param pattern The pattern.
+     * @return Returns the set of allowed letters at each position.
+     * @throws IllegalArgumentException If a bracket isn't closed.
+     */
+    public long[] letterSets(String pattern) {
+        long[] sets = new long[pattern.length()];
+        int len = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            long set = 0;
+            if (c == '.') {
+                set = -1L;
+            } else if (c == '[') {
+                int close = pattern.indexOf(']', i);
+                if (close < 0) throw new IllegalArgumentException("Unclosed [ in " + pattern);
+                for (i++; i < close; i++) {
+                    set |= letterBit(pattern.charAt(i));
+                }
+            } else {
+                set = letterBit(c);
+            }
+            sets[len++] = set;
+        }
+        return Arrays.copyOf(sets, len);
+    }
+
+    private long letterBit(char c) {
+        int letter = letterOf(c);
+        return (letter < 0) ? 0 : 1L << letter;
+    }
+
+    /**
+     * Find the IDs of all word bank words with an allowed letter at every
+     * position, without allocating.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @param ids A buffer to receive the IDs, in increasing order.  Must
+     *            hold at least {@code getWordCount(allowed.length)} entries.
+     * @return Returns the number of IDs written to {@code ids}.
+     */
+    public int matchLetterSets(long[] allowed, int[] ids) {
+        Node head = head(allowed.length);
+        return (head != null && allowed.length > 0) ? matchSets(allowed, head, 0, ids, 0) : 0;
+    }
+
+    // Visit the subtree in order, so IDs come out sorted.
+    private int matchSets(long[] allowed, Node nd, int pos, int[] ids, int n) {
+        long a = allowed[pos];
+        if (nd.smaller != null && (nd.smaller.letters & a) != 0) {
+            n = matchSets(allowed, nd.smaller, pos, ids, n);
+        }
+        if (nd.letter >= 0 && (a & (1L << nd.letter)) != 0) {
+            if (pos == allowed.length - 1) {
+                if (nd.valid) ids[n++] = nd.id;
+            } else if (nd.equal != null && (nd.equal.letters & allowed[pos + 1]) != 0) {
+                n = matchSets(allowed, nd.equal, pos + 1, ids, n);
+            }
+        }
+        if (nd.bigger != null && (nd.bigger.letters & a) != 0) {
+            n = matchSets(allowed, nd.bigger, pos, ids, n);
+        }
+        return n;
+    }
+
+    /**
+     * Test whether any word bank word has an allowed letter at every
+     * position.  The search stops at the first match.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @return Returns {@code true} if at least one word fits.
+     */
+    public boolean hasLetterSetMatch(long[] allowed) {
+        Node head = head(allowed.length);
+        return head != null && allowed.length > 0 && existsSets(allowed, head, 0);
+    }
+
+    private boolean existsSets(long[] allowed, Node nd, int pos) {
+        long a = allowed[pos];
+        if (nd.letter >= 0 && (a & (1L << nd.letter)) != 0) {
+            if (pos == allowed.length - 1) {
+                if (nd.valid) return true;
+            } else if (nd.equal != null && (nd.equal.letters & allowed[pos + 1]) != 0 &&
+                    existsSets(allowed, nd.equal, pos + 1)) {
+                return true;
+            }
+        }
+        if (nd.smaller != null && (nd.smaller.letters & a) != 0 &&
+                existsSets(allowed, nd.smaller, pos)) {
+            return true;
+        }
+        return nd.bigger != null && (nd.bigger.letters & a) != 0 &&
+                existsSets(allowed, nd.bigger, pos);
+    }
+
+    /**
+     * Count the word bank words with an allowed letter at every position
+     * without collecting them.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @return Returns the number of words that fit.
+     */
+    public int countLetterSets(long[] allowed) {
+        Node head = head(allowed.length);
+        return (head != null && allowed.length > 0) ? countSets(allowed, head, 0) : 0;
+    }
+
+    private int countSets(long[] allowed, Node nd, int pos) {
+        long a = allowed[pos];
+        int total = 0;
+        if (nd.smaller != null && (nd.smaller.letters & a) != 0) {
+            total += countSets(allowed, nd.smaller, pos);
+        }
+        if (nd.letter >= 0 && (a & (1L << nd.letter)) != 0) {
+            if (pos == allowed.length - 1) {
+                if (nd.valid) total++;
+            } else if (nd.equal != null && (nd.equal.letters & allowed[pos + 1]) != 0) {
+                total += countSets(allowed, nd.equal, pos + 1);
+            }
+        }
+        if (nd.bigger != null && (nd.bigger.letters & a) != 0) {
+            total += countSets(allowed, nd.bigger, pos);
+        }
+        return total;
+    }
+
     /*--------------------------------------
     *
     * The following prefix-match methods are not required for operation of WordSquare.
     *
     * --------------------------------------*/
 
+    @Override
     public Iterable<String> matchPrefix(String prefix) {
-        // Get head of subtree for this prefix
-        Node nd = find(prefix, head, 0);
-        if (nd == null) return null;
-        else {
-            // Create an iterable set.
-            HashSet<String> valid = new HashSet<>();
+        // Create an iterable set.
+        HashSet<String> valid = new HashSet<>();
+        for (int len = prefix.length(); len < heads.length; len++) {
+            // Get head of subtree for this prefix
+            Node nd = find(prefix, heads[len], 0);
+            if (nd == null) continue;
             // If prefix is a valid word, add it
             if (nd.valid) valid.add(prefix);
             // Fill set with all valid words in prefix subtree
             if (nd.equal != null) fillSet(nd.equal, new StringBuilder(prefix), valid);
-            // Return
-            if (valid.size() == 0) return null;
-            return valid;
         }
+        // Return
+        if (valid.size() == 0) return null;
+        return valid;
     }
 
     private Node find(String prefix, Node nd, int pos) {
@@ -155,7 +522,10 @@ public class DictionaryTernary {
 
     private class Node {
         private boolean valid;
+        private int id; // The word ID, if valid.
         private char value;
+        private byte letter = -1; // The letter number of value.
+        private long letters; // The letters of this node and its smaller/bigger subtrees.
         private Node smaller;
         private Node bigger;
         private Node equal;
@@ -0,0 +1,434 @@
+package WordSquare;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * {@code DictionaryTernaryArray} holds the word bank in ternary search trees
+ * stored in parallel primitive arrays instead of one object per node.  Node
+ * {@code n} has its letter in {@code value[n]}, its children in
+ * {@code smaller[n]}, {@code bigger[n]} and {@code equal[n]}, and its
+ * end-of-word flag in bit {@code n} of {@code valid}, with the word's ID in
+ * {@code wordId[n]}.  Index 0 is never a
+ * real node, so a child index of 0 means there is no child.
+ * <p>
+ * Each word length has its own tree, rooted at {@code roots[len]}, and each
+ * tree's nodes are contiguous.  A pattern only ever matches words of its own
+ * length, so a query walks one small, dense tree and never visits nodes
+ * that only lead to words of other lengths.
+ * <p>
+ * Queries give the same results as {@code DictionaryTernary}, but walk
+ * dense arrays rather than chasing object references, and follow
+ * {@code smaller}/{@code bigger} chains in a loop rather than by recursion.
+ * Like {@code DictionaryTernary}, the tree is only written in the
+ * constructor and is safe for concurrent readers.
+ */
+public class DictionaryTernaryArray implements WordDictionary {
+    // The index used for a missing child.
+    private static final int NONE = 0;
+
+    private final char[] value;
+    private final int[] smaller;
+    private final int[] bigger;
+    private final int[] equal;
+    private final long[] valid;
+    private final int[] wordId;
+    // The root of each length's tree, or NONE if there are no such words.
+    private final int[] roots;
+    // The words of each length, indexed by word ID.
+    private final String[][] words;
+
+    // The number of array slots, including the unused slot 0.
+    private final int size;
+
+    /**
+     * Build a balanced tree from the word bank.
+     */
+    public DictionaryTernaryArray() {
+        this(true);
+    }
+
+    /**
+     * Build a tree from the word bank.
+     * @param balanced {@code true} to insert the words median-first, which
+     *                 keeps the {@code smaller}/{@code bigger} chains short.
+     *                 {@code false} to insert them in file order.
+     */
+    public DictionaryTernaryArray(boolean balanced) {
+        List<String> sorted = WordBank.loadSorted();
+        words = WordBank.byLength(sorted);
+        List<String> fileOrder = balanced ? null : WordBank.load();
+        // Build one length's tree at a time, so each tree is contiguous.
+        Builder builder = new Builder();
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            List<String> order;
+            if (balanced) {
+                order = WordBank.medianOrder(Arrays.asList(words[len]));
+            } else {
+                order = new ArrayList<String>();
+                for (String word : fileOrder) {
+                    if (word.length() == len) order.add(word);
+                }
+            }
+            for (String word : order) {
+                builder.insert(word, Arrays.binarySearch(words[len], word));
+            }
+        }
+        roots = builder.roots;
+        size = builder.size;
+        value = Arrays.copyOf(builder.value, size);
+        smaller = Arrays.copyOf(builder.smaller, size);
+        bigger = Arrays.copyOf(builder.bigger, size);
+        equal = Arrays.copyOf(builder.equal, size);
+        valid = Arrays.copyOf(builder.valid, (size + 63) >>> 6);
+        wordId = Arrays.copyOf(builder.wordId, size);
+    }
+
+    /**
+     * Get the number of nodes in the tree.
+     * @return Returns the node count.
+     */
+    public int getNodeCount() {
+        return size - 1;
+    }
+
+    /**
+     * Get the root node of a length's tree.
+     * @param len The word length.
+     * @return Returns the root's index, or 0 if there are no words of that
+     * length.
+     */
+    int getRoot(int len) {
+        return (len < roots.length) ? roots[len] : NONE;
+    }
+
+    /**
+     * Get the depth of the deepest word in the tree.
+     * @return Returns the greatest number of nodes visited to reach the
+     * end of any word.
+     */
+    public int getMaxDepth() {
+        long[] stats = new long[3];
+        for (int root : roots) {
+            if (root != NONE) measure(root, 1, stats);
+        }
+        return (int) stats[2];
+    }
+
+    /**
+     * Get the average depth of the words in the tree.
+     * @return Returns the average number of nodes visited to reach the end
+     * of a word.
+     */
+    public double getAveragePathLength() {
+        long[] stats = new long[3];
+        for (int root : roots) {
+            if (root != NONE) measure(root, 1, stats);
+        }
+        return (stats[0] == 0) ? 0 : (double) stats[1] / stats[0];
+    }
+
+    // Tally word count, total depth and maximum depth into stats.
+    private void measure(int nd, int depth, long[] stats) {
+        if (isValid(nd)) {
+            stats[0]++;
+            stats[1] += depth;
+            if (depth > stats[2]) stats[2] = depth;
+        }
+        if (smaller[nd] != NONE) measure(smaller[nd], depth + 1, stats);
+        if (bigger[nd] != NONE) measure(bigger[nd], depth + 1, stats);
+        if (equal[nd] != NONE) measure(equal[nd], depth + 1, stats);
+    }
+
+    /**
+     * Write every node, slot 0 included, as the five {@code int}s
+     * {@code value, smaller, bigger, equal, id}, where {@code id} is the
+     * word ID for a node ending a word and -1 otherwise.  This is the node
+     * layout of a {@code DictionarySnapshot}.
+     * @param out The stream to write to.
+     * @throws IOException If the stream can't be written.
+     */
+    void writeNodes(DataOutputStream out) throws IOException {
+        for (int nd = 0; nd < size; nd++) {
+            out.writeInt(value[nd]);
+            out.writeInt(smaller[nd]);
+            out.writeInt(bigger[nd]);
+            out.writeInt(equal[nd]);
+            out.writeInt(isValid(nd) ? wordId[nd] : -1);
+        }
+    }
+
+    private boolean isValid(int nd) {
+        return (valid[nd >>> 6] & (1L << nd)) != 0;
+    }
+
+    /*--------------------------------------
+    *
+    * Pattern-match methods.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPattern(String pattern) {
+        HashSet<String> matches = new HashSet<>();
+        int root = getRoot(pattern.length());
+        if (root != NONE) match(pattern, root, 0, new char[pattern.length()], matches);
+        return matches;
+    }
+
+    private void match(String pattern, int nd, int pos, char[] buf, HashSet<String> matches) {
+        int last = pattern.length() - 1;
+        while (nd != NONE) {
+            char c = pattern.charAt(pos);
+            char v = value[nd];
+            if (c == '.' || c == v) {
+                // A wildcard also has to try both sibling subtrees.
+                if (c == '.') match(pattern, smaller[nd], pos, buf, matches);
+                buf[pos] = v;
+                if (pos == last) {
+                    if (isValid(nd)) matches.add(new String(buf));
+                } else {
+                    match(pattern, equal[nd], pos + 1, buf, matches);
+                }
+                if (c != '.') return;
+                nd = bigger[nd];
+            } else if (c < v) {
+                nd = smaller[nd];
+            } else {
+                nd = bigger[nd];
+            }
+        }
+    }
+
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        int root = getRoot(pattern.length);
+        return (root != NONE) ? matchIds(pattern, root, 0, ids, 0) : 0;
+    }
+
+    // Visit the subtree in order, so IDs come out sorted.
+    private int matchIds(char[] pattern, int nd, int pos, int[] ids, int n) {
+        int last = pattern.length - 1;
+        while (nd != NONE) {
+            char c = pattern[pos];
+            char v = value[nd];
+            if (c == '.') {
+                n = matchIds(pattern, smaller[nd], pos, ids, n);
+                if (pos == last) {
+                    if (isValid(nd)) ids[n++] = wordId[nd];
+                } else {
+                    n = matchIds(pattern, equal[nd], pos + 1, ids, n);
+                }
+                nd = bigger[nd];
+            } else if (c == v) {
+                if (pos == last) {
+                    if (isValid(nd)) ids[n++] = wordId[nd];
+                    return n;
+                }
+                nd = equal[nd];
+                pos++;
+            } else if (c < v) {
+                nd = smaller[nd];
+            } else {
+                nd = bigger[nd];
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int getWordCount(int len) {
+        return (len < words.length) ? words[len].length : 0;
+    }
+
+    @Override
+    public String getWord(int len, int id) {
+        return words[len][id];
+    }
+
+    @Override
+    public boolean hasMatch(String pattern) {
+        int root = getRoot(pattern.length());
+        return root != NONE && exists(pattern, root, 0);
+    }
+
+    private boolean exists(String pattern, int nd, int pos) {
+        int last = pattern.length() - 1;
+        while (nd != NONE) {
+            char c = pattern.charAt(pos);
+            char v = value[nd];
+            if (c == '.') {
+                if (exists(pattern, smaller[nd], pos)) return true;
+                if (pos == last) {
+                    if (isValid(nd)) return true;
+                } else if (exists(pattern, equal[nd], pos + 1)) {
+                    return true;
+                }
+                nd = bigger[nd];
+            } else if (c == v) {
+                if (pos == last) return isValid(nd);
+                nd = equal[nd];
+                pos++;
+            } else if (c < v) {
+                nd = smaller[nd];
+            } else {
+                nd = bigger[nd];
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int countPattern(String pattern) {
+        int root = getRoot(pattern.length());
+        return (root != NONE) ? count(pattern, root, 0) : 0;
+    }
+
+    private int count(String pattern, int nd, int pos) {
+        int last = pattern.length() - 1;
+        int total = 0;
+        while (nd != NONE) {
+            char c = pattern.charAt(pos);
+            char v = value[nd];
+            if (c == '.') {
+                total += count(pattern, smaller[nd], pos);
+                if (pos == last) {
+                    if (isValid(nd)) total++;
+                } else {
+                    total += count(pattern, equal[nd], pos + 1);
+                }
+                nd = bigger[nd];
+            } else if (c == v) {
+                if (pos == last) return isValid(nd) ? total + 1 : total;
+                nd = equal[nd];
+                pos++;
+            } else if (c < v) {
+                nd = smaller[nd];
+            } else {
+                nd = bigger[nd];
+            }
+        }
+        return total;
+    }
+
+    /*--------------------------------------
+    *
+    * The following prefix-match methods are not required for operation of WordSquare.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPrefix(String prefix) {
+        HashSet<String> found = new HashSet<>();
+        char[] buf = Arrays.copyOf(prefix.toCharArray(), WordBank.MAX_LENGTH);
+        for (int len = prefix.length(); len < roots.length; len++) {
+            // Get head of subtree for this prefix
+            int nd = find(prefix, roots[len]);
+            if (nd == NONE) continue;
+            if (isValid(nd)) found.add(prefix);
+            // Fill set with all valid words in prefix subtree
+            fillSet(equal[nd], prefix.length(), buf, found);
+        }
+        if (found.size() == 0) return null;
+        return found;
+    }
+
+    private int find(String prefix, int root) {
+        int nd = root;
+        int pos = 0;
+        while (nd != NONE) {
+            char c = prefix.charAt(pos);
+            char v = value[nd];
+            if (c == v) {
+                if (pos == prefix.length() - 1) return nd;
+                nd = equal[nd];
+                pos++;
+            } else if (c < v) {
+                nd = smaller[nd];
+            } else {
+                nd = bigger[nd];
+            }
+        }
+        return NONE;
+    }
+
+    private void fillSet(int nd, int pos, char[] buf, HashSet<String> found) {
+        while (nd != NONE && pos < buf.length) {
+            fillSet(smaller[nd], pos, buf, found);
+            buf[pos] = value[nd];
+            if (isValid(nd)) found.add(new String(buf, 0, pos + 1));
+            fillSet(equal[nd], pos + 1, buf, found);
+            nd = bigger[nd];
+        }
+    }
+
+    /**
+     * {@code Builder} grows the node arrays while the word bank is inserted.
+     */
+    private static class Builder {
+        private char[] value = new char[1024];
+        private int[] smaller = new int[1024];
+        private int[] bigger = new int[1024];
+        private int[] equal = new int[1024];
+        private long[] valid = new long[16];
+        private int[] wordId = new int[1024];
+        private final int[] roots = new int[WordBank.MAX_LENGTH + 1];
+        // Slot 0 is reserved for NONE.
+        private int size = 1;
+
+        private int newNode(char c) {
+            if (size == value.length) {
+                int capacity = size * 2;
+                value = Arrays.copyOf(value, capacity);
+                smaller = Arrays.copyOf(smaller, capacity);
+                bigger = Arrays.copyOf(bigger, capacity);
+                equal = Arrays.copyOf(equal, capacity);
+                valid = Arrays.copyOf(valid, capacity >>> 6);
+                wordId = Arrays.copyOf(wordId, capacity);
+            }
+            value[size] = c;
+            return size++;
+        }
+
+        private void insert(String word, int id) {
+            int len = word.length();
+            if (roots[len] == NONE) roots[len] = newNode(word.charAt(0));
+            int nd = roots[len];
+            int pos = 0;
+            while (true) {
+                char c = word.charAt(pos);
+                if (c == value[nd]) {
+                    if (pos == word.length() - 1) {
+                        valid[nd >>> 6] |= 1L << nd;
+                        wordId[nd] = id;
+                        return;
+                    }
+                    pos++;
+                    // newNode may replace the arrays, so call it before
+                    // choosing which array to store into.
+                    if (equal[nd] == NONE) {
+                        int child = newNode(word.charAt(pos));
+                        equal[nd] = child;
+                    }
+                    nd = equal[nd];
+                } else if (c < value[nd]) {
+                    if (smaller[nd] == NONE) {
+                        int child = newNode(c);
+                        smaller[nd] = child;
+                    }
+                    nd = smaller[nd];
+                } else {
+                    if (bigger[nd] == NONE) {
+                        int child = newNode(c);
+                        bigger[nd] = child;
+                    }
+                    nd = bigger[nd];
+                }
+            }
+        }
+    }
+}
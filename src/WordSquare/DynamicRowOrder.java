@@ -0,0 +1,33 @@
+package WordSquare;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@code DynamicRowOrder} fills the most constrained open row first: the
+ * row with the fewest matching word bank words under the current partial
+ * word square.  Rows with more fixed letters, or rarer letters, are
+ * chosen ahead of wide-open rows, which keeps the search tree narrow.
+ */
+public class DynamicRowOrder implements RowOrder {
+
+    @Override
+    public int select(int[] searchRows, int pos, IntUnaryOperator candidates) {
+        int best = pos;
+        int bestCount = Integer.MAX_VALUE;
+        for (int i = pos; i < searchRows.length; i++) {
+            int count = candidates.applyAsInt(searchRows[i]);
+            if (count < bestCount) {
+                best = i;
+                bestCount = count;
+                // A row with no candidates is a dead end; stop looking.
+                if (count == 0) break;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public IntUnaryOperator counts(IntUnaryOperator exact, IntUnaryOperator estimated) {
+        return exact;
+    }
+}
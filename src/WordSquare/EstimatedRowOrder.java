@@ -0,0 +1,19 @@
+package WordSquare;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@code EstimatedRowOrder} fills the open row with the fewest candidates
+ * first, as {@code DynamicRowOrder} does, but counts them with estimates
+ * from the {@code LengthStats} of the square's word length instead of
+ * exact ones.  An estimate costs a few lookups per fixed letter
+ * rather than a dictionary query, so choosing a row is cheaper, at the risk
+ * of sometimes choosing a row that isn't the most constrained.
+ */
+public class EstimatedRowOrder extends DynamicRowOrder {
+
+    @Override
+    public IntUnaryOperator counts(IntUnaryOperator exact, IntUnaryOperator estimated) {
+        return estimated;
+    }
+}
@@ -0,0 +1,126 @@
+package WordSquare;
+
+import java.util.Arrays;
+
+/**
+ * {@code LengthStats} summarizes the dictionary words of one length: how
+ * many there are and how often each letter appears at each position.  The
+ * search heuristics use it to guess how many words fit a pattern without
+ * querying the dictionary.
+ * <p>
+ * The statistics are computed in the constructor and never changed, so one
+ * instance is safe for concurrent readers.
+ */
+public class LengthStats {
+    private final int len;
+    private final int wordCount;
+    // The distinct letters used by words of this length, sorted.
+    private final char[] letters;
+    // counts[pos][i] is the number of words with letters[i] at pos.
+    private final int[][] counts;
+
+    /**
+     * Count the letters at each position of the words of one length.
+     * @param dict The dictionary to summarize.
+     * @param len The word length.
+     */
+    public LengthStats(WordDictionary dict, int len) {
+        this.len = len;
+        wordCount = dict.getWordCount(len);
+
+        // Find the distinct letters.
+        StringBuilder used = new StringBuilder();
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        for (int id = 0; id < wordCount; id++) {
+            String word = dict.getWord(len, id);
+            for (int pos = 0; pos < len; pos++) {
+                char c = word.charAt(pos);
+                if (!seen[c]) {
+                    seen[c] = true;
+                    used.append(c);
+                }
+            }
+        }
+        letters = used.toString().toCharArray();
+        Arrays.sort(letters);
+
+        counts = new int[len][letters.length];
+        for (int id = 0; id < wordCount; id++) {
+            String word = dict.getWord(len, id);
+            for (int pos = 0; pos < len; pos++) {
+                counts[pos][Arrays.binarySearch(letters, word.charAt(pos))]++;
+            }
+        }
+    }
+
+    /**
+     * Summarize every word length of a dictionary.
+     * @param dict The dictionary to summarize.
+     * @return Returns an array of statistics, indexed by word length.
+     */
+    public static LengthStats[] forAll(WordDictionary dict) {
+        LengthStats[] stats = new LengthStats[WordBank.MAX_LENGTH + 1];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            stats[len] = new LengthStats(dict, len);
+        }
+        return stats;
+    }
+
+    /**
+     * Get the word length these statistics describe.
+     * @return Returns the word length.
+     */
+    public int getLength() {
+        return len;
+    }
+
+    /**
+     * Get the number of words of this length.
+     * @return Returns the word count.
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Get the number of words with a given letter at a given position.
+     * @param pos The position.
+     * @param c The letter.
+     * @return Returns the number of words with that letter there.
+     */
+    public int getCount(int pos, char c) {
+        int i = Arrays.binarySearch(letters, c);
+        return (i < 0) ? 0 : counts[pos][i];
+    }
+
+    /**
+     * Get the share of words with a given letter at a given position.
+     * @param pos The position.
+     * @param c The letter.
+     * @return Returns a fraction between 0 and 1.
+     */
+    public double getFrequency(int pos, char c) {
+        return (wordCount == 0) ? 0 : (double) getCount(pos, c) / wordCount;
+    }
+
+    /**
+     * Estimate how many words match a pattern from the letter frequencies
+     * alone, treating positions as independent.  The estimate is exact for
+     * a pattern with at most one fixed letter, and is 0 only when no word
+     * can match.
+     * @param pattern The pattern, of this length, with {@code '.'} for an
+     *                open position.
+     * @return Returns the estimated match count.
+     */
+    public int estimateMatches(char[] pattern) {
+        double estimate = wordCount;
+        for (int pos = 0; pos < len; pos++) {
+            char c = pattern[pos];
+            if (c == '.') continue;
+            int count = getCount(pos, c);
+            if (count == 0) return 0;
+            estimate = estimate * count / wordCount;
+        }
+        return Math.max(1, (int) Math.round(estimate));
+    }
+}
@@ -0,0 +1,241 @@
+package WordSquare;
+
+import java.util.Arrays;
+
+/**
+ * {@code LetterDomains} tracks, for every cell of a partial word square,
+ * the set of letters that can still go there, and narrows the sets as words
+ * are placed so that dead branches are found before any row is searched.
+ * <p>
+ * A word square reads the same across and down, so cell {@code (r, c)} is
+ * letter {@code c} of row {@code r} and also letter {@code r} of row
+ * {@code c}.  Each open row constrains its cells: a letter stays in a
+ * cell's set only if some dictionary word fits the row using only allowed
+ * letters at every position and has that letter in that cell.  Narrowing a
+ * cell can in turn narrow the crossing row, so rows are revised from a work
+ * queue until no set changes, as in AC-3.  A set emptied by this means no
+ * completion exists, and the branch is cut.
+ * <p>
+ * Letter sets are {@code long}s numbered by the {@code PatternIndex}, which
+ * must have letter sets.  The sets can be saved and restored by search
+ * depth, so backtracking doesn't recompute them.  An instance must only be
+ * used by one thread; {@code copy} makes one for another thread.
+ */
+class LetterDomains {
+    private final PatternIndex index;
+    private final int len;
+    // The letter set of cell (r, c) at r * len + c.  Kept symmetric.
+    private final long[] masks;
+    // Bit r set if row r is open.
+    private int openRows;
+    // The sets and open rows saved at each search depth.
+    private final long[][] savedMasks;
+    private final int[] savedOpenRows;
+    // Scratch space for revising one row.
+    private final long[] allowed;
+    private final long[] supported;
+    // The rows waiting to be revised, as a circular queue, and a bit per
+    // row that is in it.
+    private final int[] queue;
+    private int head = 0;
+    private int queued = 0;
+    private int waiting = 0;
+    private final SearchMetrics.Local counters;
+
+    /**
+     * Set up the letter sets for a partial word square.  Cells of filled
+     * rows hold their letter; a {@code '.'} in a filled row, and every cell
+     * of an open row, allows any letter.  Call {@code propagate} to narrow
+     * them.
+     * @param index The index to check rows against.
+     * @param square The partial word square; open rows are {@code null}.
+     * @param len The word square size.
+     * @param counters The counters to record revisions in.
+     */
+    LetterDomains(PatternIndex index, String[] square, int len, SearchMetrics.Local counters) {
+        this.index = index;
+        this.len = len;
+        this.counters = counters;
+        masks = new long[len * len];
+        Arrays.fill(masks, -1L);
+        for (int row = 0; row < len; row++) {
+            if (square[row] == null) {
+                openRows |= 1 << row;
+                continue;
+            }
+            for (int col = 0; col < len; col++) {
+                char c = square[row].charAt(col);
+                if (c == '.') continue;
+                masks[row * len + col] &= letterBit(c);
+                masks[col * len + row] = masks[row * len + col];
+            }
+        }
+        savedMasks = new long[len][len * len];
+        savedOpenRows = new int[len];
+        allowed = new long[len];
+        supported = new long[len];
+        queue = new int[len];
+    }
+
+    private LetterDomains(LetterDomains other, SearchMetrics.Local counters) {
+        index = other.index;
+        len = other.len;
+        this.counters = counters;
+        masks = other.masks.clone();
+        openRows = other.openRows;
+        savedMasks = new long[len][len * len];
+        savedOpenRows = new int[len];
+        allowed = new long[len];
+        supported = new long[len];
+        queue = new int[len];
+    }
+
+    /**
+     * Make an independent copy of the current letter sets for another
+     * thread.  Saved sets aren't copied.
+     * @param counters The counters the copy records revisions in.
+     * @return Returns the copy.
+     */
+    LetterDomains copy(SearchMetrics.Local counters) {
+        return new LetterDomains(this, counters);
+    }
+
+    private long letterBit(char c) {
+        int letter = index.letterOf(c);
+        return (letter < 0) ? 0 : 1L << letter;
+    }
+
+    // Narrow cell (row, col) and its mirror, queueing the open rows through
+    // it if it changed.
+    private void restrict(int row, int col, long mask) {
+        long old = masks[row * len + col];
+        long narrowed = old & mask;
+        if (narrowed == old) return;
+        masks[row * len + col] = narrowed;
+        masks[col * len + row] = narrowed;
+        enqueue(row);
+        enqueue(col);
+    }
+
+    private void enqueue(int row) {
+        int bit = 1 << row;
+        if ((openRows & bit) == 0 || (queued & bit) != 0) return;
+        queued |= bit;
+        queue[(head + waiting++) % len] = row;
+    }
+
+    /**
+     * Narrow every letter set until each open row is consistent with them.
+     * @return Returns {@code false} if some cell has no letter left, so the
+     * partial word square has no completion.
+     */
+    boolean propagate() {
+        for (int row = 0; row < len; row++) {
+            enqueue(row);
+        }
+        return run();
+    }
+
+    /**
+     * Fill an open row with a word and narrow the letter sets to match.
+     * @param row The row filled.
+     * @param word The word placed there.
+     * @return Returns {@code false} if the word breaks a letter set, or the
+     * narrowed sets leave some cell empty.
+     */
+    boolean place(int row, String word) {
+        openRows &= ~(1 << row);
+        for (int col = 0; col < len; col++) {
+            long bit = letterBit(word.charAt(col));
+            if ((masks[row * len + col] & bit) == 0) {
+                clearQueue();
+                return false;
+            }
+            restrict(row, col, bit);
+        }
+        return run();
+    }
+
+    // Revise queued rows until none is left or a set is emptied.
+    private boolean run() {
+        while (waiting > 0) {
+            int row = queue[head];
+            head = (head + 1) % len;
+            waiting--;
+            queued &= ~(1 << row);
+            if (!revise(row)) {
+                clearQueue();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clearQueue() {
+        head = 0;
+        waiting = 0;
+        queued = 0;
+    }
+
+    // Drop the letters of an open row's cells that no fitting word has.
+    private boolean revise(int row) {
+        System.arraycopy(masks, row * len, allowed, 0, len);
+        boolean fits = index.supportLetters(len, allowed, supported);
+        int removed = 0;
+        if (fits) {
+            // The row stays consistent with what it narrows, so only the
+            // crossing rows need another look.
+            for (int col = 0; col < len; col++) {
+                long narrowed = allowed[col] & supported[col];
+                if (narrowed != allowed[col]) {
+                    removed += Long.bitCount(allowed[col] & ~narrowed);
+                    masks[row * len + col] = narrowed;
+                    masks[col * len + row] = narrowed;
+                    if (col != row) enqueue(col);
+                }
+            }
+        }
+        counters.revision(removed);
+        return fits;
+    }
+
+    /**
+     * Save the current letter sets and open rows for a search depth.
+     * @param depth The search depth.
+     */
+    void save(int depth) {
+        System.arraycopy(masks, 0, savedMasks[depth], 0, masks.length);
+        savedOpenRows[depth] = openRows;
+    }
+
+    /**
+     * Go back to the letter sets and open rows saved for a search depth.
+     * @param depth The search depth.
+     */
+    void restore(int depth) {
+        System.arraycopy(savedMasks[depth], 0, masks, 0, masks.length);
+        openRows = savedOpenRows[depth];
+    }
+
+    /**
+     * Get the letters that can still go in each cell of a row, as the
+     * letter-set pattern of the words that can fill it.
+     * @param row The row.
+     * @param sets A buffer of the word square size to receive the sets.
+     * @return Returns {@code sets}.
+     */
+    long[] getRow(int row, long[] sets) {
+        System.arraycopy(masks, row * len, sets, 0, len);
+        return sets;
+    }
+
+    /**
+     * Get the letters that can still go in a cell.
+     * @param row The cell's row.
+     * @param col The cell's column.
+     * @return Returns the cell's letter set.
+     */
+    long getMask(int row, int col) {
+        return masks[row * len + col];
+    }
+}
@@ -34,6 +34,15 @@ public class Main extends Application {
     }
 
     public static void main(String[] args) {
+        // Load the dictionary and score table while the window is created.
+        Thread preload = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                WordSquare.preload();
+            }
+        }, "preload");
+        preload.setDaemon(true);
+        preload.start();
         launch(args);
     }
 
@@ -0,0 +1,313 @@
+package WordSquare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code PatternCache} is a {@code WordDictionary} that remembers the word
+ * IDs matching recent patterns and answers repeats without asking the
+ * dictionary behind it.  The search produces the same patterns over and
+ * over on different branches, and repeated searches with the same seed
+ * words produce the same patterns again.
+ * <p>
+ * Results are held as compact {@code int[]} ID arrays.  The cache is split
+ * into independently locked segments, each an open-addressing table keyed
+ * by the packed pattern, so a lookup boxes nothing and allocates nothing.
+ * Once the IDs a segment holds exceed its share of the budget, it evicts
+ * patterns not used recently, choosing them with the CLOCK approximation
+ * of least recently used.  Hit, miss and eviction counts are kept for
+ * tuning.
+ */
+public class PatternCache implements WordDictionary {
+    // The number of independently locked segments.  Must be a power of 2.
+    private static final int SEGMENTS = 16;
+
+    private final WordDictionary dict;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache in front of a dictionary.
+     * @param dict The dictionary to answer cache misses.
+     * @param maxIds The most word IDs to hold across all cached patterns.
+     */
+    public PatternCache(WordDictionary dict, int maxIds) {
+        this.dict = dict;
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxIds / SEGMENTS));
+        }
+    }
+
+    /**
+     * Pack a pattern into a {@code long}: three bits of length, then ten
+     * bits per character.
+     * @param pattern The pattern to pack.
+     * @return Returns the key, which is never 0, or {@code -1} if the
+     * pattern is empty, too long or uses a character that doesn't fit, in
+     * which case it isn't cached.
+     */
+    private static long key(char[] pattern) {
+        if (pattern.length == 0 || pattern.length > WordBank.MAX_LENGTH) return -1;
+        long key = pattern.length;
+        for (char c : pattern) {
+            if (c >= 1024) return -1;
+            key = (key << 10) | c;
+        }
+        return key;
+    }
+
+    private Segment segmentFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /*--------------------------------------
+    *
+    * Pattern-match methods.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        long key = key(pattern);
+        if (key < 0) return dict.matchIds(pattern, ids);
+        Segment segment = segmentFor(key);
+        int[] cached = segment.find(key);
+        if (cached != null) {
+            hits.increment();
+            System.arraycopy(cached, 0, ids, 0, cached.length);
+            return cached.length;
+        }
+        misses.increment();
+        int count = dict.matchIds(pattern, ids);
+        segment.store(key, Arrays.copyOf(ids, count));
+        return count;
+    }
+
+    @Override
+    public Iterable<String> matchPattern(String pattern) {
+        int len = pattern.length();
+        ArrayList<String> matches = new ArrayList<String>();
+        int[] ids = new int[getWordCount(len)];
+        int count = matchIds(pattern.toCharArray(), ids);
+        for (int i = 0; i < count; i++) {
+            matches.add(getWord(len, ids[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean hasMatch(String pattern) {
+        return countPattern(pattern) > 0;
+    }
+
+    @Override
+    public int countPattern(String pattern) {
+        return matchIds(pattern.toCharArray(), new int[getWordCount(pattern.length())]);
+    }
+
+    @Override
+    public int getWordCount(int len) {
+        return dict.getWordCount(len);
+    }
+
+    @Override
+    public String getWord(int len, int id) {
+        return dict.getWord(len, id);
+    }
+
+    @Override
+    public Iterable<String> matchPrefix(String prefix) {
+        return dict.matchPrefix(prefix);
+    }
+
+    /*--------------------------------------
+    *
+    * Cache statistics.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Get the number of pattern queries answered from the cache.
+     * @return Returns the hit count.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of pattern queries passed to the dictionary.
+     * @return Returns the miss count.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of patterns dropped to stay within budget.
+     * @return Returns the eviction count.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of patterns currently cached.
+     * @return Returns the cached pattern count.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Drop every cached pattern.  Statistics are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * {@code Segment} is one lock's worth of the cache: an open-addressing
+     * table of packed pattern keys and their IDs, probed linearly, with a
+     * reference bit per slot for CLOCK eviction.  Each pattern counts as
+     * one ID more than it holds, so patterns with no matches are bounded
+     * too.
+     */
+    private class Segment {
+        // The key in each slot, or 0 for an empty slot.
+        private long[] keys = new long[64];
+        private int[][] values = new int[64][];
+        // Set when a slot's pattern is used; cleared as the clock hand
+        // passes.
+        private boolean[] referenced = new boolean[64];
+        private final int maxIds;
+        private int heldIds = 0;
+        private int size = 0;
+        private int hand = 0;
+
+        Segment(int maxIds) {
+            this.maxIds = maxIds;
+        }
+
+        private int home(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+        }
+
+        // Find a key's slot, or the empty slot where it would go.
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = home(key);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        synchronized int[] find(long key) {
+            int i = slot(key);
+            if (keys[i] == 0) return null;
+            referenced[i] = true;
+            return values[i];
+        }
+
+        synchronized void store(long key, int[] ids) {
+            // A result larger than the whole segment would only evict
+            // everything else, so don't keep it.
+            if (ids.length + 1 > maxIds) return;
+            int i = slot(key);
+            if (keys[i] != 0) {
+                heldIds -= values[i].length + 1;
+            } else {
+                keys[i] = key;
+                size++;
+            }
+            values[i] = ids;
+            referenced[i] = true;
+            heldIds += ids.length + 1;
+            while (heldIds > maxIds) {
+                evict();
+            }
+            if (size * 2 > keys.length) grow();
+        }
+
+        // Advance the clock hand to the first pattern not used since it
+        // last passed, and drop it.
+        private void evict() {
+            int mask = keys.length - 1;
+            while (true) {
+                hand = (hand + 1) & mask;
+                if (keys[hand] == 0) continue;
+                if (referenced[hand]) {
+                    referenced[hand] = false;
+                } else {
+                    remove(hand);
+                    evictions.increment();
+                    return;
+                }
+            }
+        }
+
+        // Empty a slot, shifting later keys of the same probe run back so
+        // that every key stays reachable from its home slot.
+        private void remove(int i) {
+            int mask = keys.length - 1;
+            heldIds -= values[i].length + 1;
+            size--;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (keys[j] == 0) break;
+                int home = home(keys[j]);
+                // Leave the key if its home lies cyclically in (i, j].
+                boolean stays = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+                if (stays) continue;
+                keys[i] = keys[j];
+                values[i] = values[j];
+                referenced[i] = referenced[j];
+                i = j;
+            }
+            keys[i] = 0;
+            values[i] = null;
+            referenced[i] = false;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[][] oldValues = values;
+            boolean[] oldReferenced = referenced;
+            keys = new long[oldKeys.length * 2];
+            values = new int[keys.length][];
+            referenced = new boolean[keys.length];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                referenced[i] = oldReferenced[j];
+            }
+            hand = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            Arrays.fill(referenced, false);
+            heldIds = 0;
+            size = 0;
+        }
+    }
+}
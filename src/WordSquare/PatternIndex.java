@@ -0,0 +1,502 @@
+package WordSquare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@code PatternIndex} answers pattern queries with bitsets instead of tree
+ * walks.  Words of each length are numbered in sorted order, and for every
+ * (length, position, letter) the index holds a bitset of the numbers of the
+ * words with that letter at that position.  A pattern is answered by
+ * ANDing together the bitsets of its fixed positions, 64 words at a time,
+ * so testing for or counting matches never builds a {@code String}.
+ * <p>
+ * The index is built entirely in the constructor and is safe for
+ * concurrent readers.
+ */
+public class PatternIndex implements WordDictionary {
+    // Maps a character to its letter number, or -1 if no word uses it.
+    private final int[] charIndex;
+    // The words of each length, in sorted order.  A word's number is its
+    // position in this array.
+    private final String[][] words;
+    // bits[len][pos][letter] is the bitset of words of length len with the
+    // given letter at pos, or null if there are none.
+    private final long[][][][] bits;
+    // The first and last nonzero block of each bitset in bits.  Words are
+    // sorted, so the range is narrow whenever a pattern's leading letters
+    // are fixed.
+    private final int[][][] firstBlock;
+    private final int[][][] lastBlock;
+    // present[len][pos] has bit n set if some word of length len has
+    // letter n at pos.  Only filled when there are at most 64 letters.
+    private final long[][] present;
+    // The number of distinct letters.
+    private final int letterCount;
+
+    /**
+     * Build an index of the word bank.
+     */
+    public PatternIndex() {
+        this(WordBank.loadSorted());
+    }
+
+    /**
+     * Build an index of the words in a dictionary, numbered by their word
+     * IDs, without reading the word bank again.
+     * @param dict The dictionary to index.
+     */
+    public PatternIndex(WordDictionary dict) {
+        this(allWords(dict));
+    }
+
+    private static List<String> allWords(WordDictionary dict) {
+        ArrayList<String> all = new ArrayList<String>();
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            for (int id = 0; id < dict.getWordCount(len); id++) {
+                all.add(dict.getWord(len, id));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Build an index of a list of words.
+     * @param sorted A list of distinct words, sorted within each length.
+     */
+    PatternIndex(List<String> sorted) {
+        // Number the distinct characters in use, alphabetically.
+        charIndex = WordBank.letterNumbers(sorted);
+        int letters = 0;
+        for (int number : charIndex) {
+            if (number >= 0) letters++;
+        }
+        letterCount = letters;
+
+        // Split the words by length, keeping them sorted.
+        words = WordBank.byLength(sorted);
+
+        // Set a bit for each letter of each word.
+        bits = new long[WordBank.MAX_LENGTH + 1][][][];
+        firstBlock = new int[WordBank.MAX_LENGTH + 1][][];
+        lastBlock = new int[WordBank.MAX_LENGTH + 1][][];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            int blocks = (words[len].length + 63) >>> 6;
+            bits[len] = new long[len][letters][];
+            firstBlock[len] = new int[len][letters];
+            lastBlock[len] = new int[len][letters];
+            for (int id = 0; id < words[len].length; id++) {
+                String word = words[len][id];
+                for (int pos = 0; pos < len; pos++) {
+                    int letter = charIndex[word.charAt(pos)];
+                    if (bits[len][pos][letter] == null) {
+                        bits[len][pos][letter] = new long[blocks];
+                        firstBlock[len][pos][letter] = id >>> 6;
+                    }
+                    bits[len][pos][letter][id >>> 6] |= 1L << id;
+                    lastBlock[len][pos][letter] = id >>> 6;
+                }
+            }
+        }
+
+        // Note the letters used at each position, for letter sets.
+        present = new long[WordBank.MAX_LENGTH + 1][];
+        for (int len = 0; len <= WordBank.MAX_LENGTH; len++) {
+            present[len] = new long[len];
+            if (letters > 64) continue;
+            for (int pos = 0; pos < len; pos++) {
+                for (int letter = 0; letter < letters; letter++) {
+                    if (bits[len][pos][letter] != null) present[len][pos] |= 1L << letter;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of words of a given length.
+     * @param len The word length.
+     * @return Returns the number of words of that length.
+     */
+    @Override
+    public int getWordCount(int len) {
+        return (len < words.length) ? words[len].length : 0;
+    }
+
+    /**
+     * Get a word by its length and number.
+     * @param len The word length.
+     * @param id The word's number among words of that length.
+     * @return Returns the word.
+     */
+    @Override
+    public String getWord(int len, int id) {
+        return words[len][id];
+    }
+
+    /*--------------------------------------
+    *
+    * Letter-set methods.  A letter set is a long with bit n set for
+    * letter n, so they only work with at most 64 distinct letters.
+    * Letters are numbered alphabetically, so sets agree with those of a
+    * DictionaryTernary of the same words.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Check whether letter sets can be used with this index.
+     * @return Returns {@code true} if the words use at most 64 distinct
+     * letters.
+     */
+    public boolean hasLetterSets() {
+        return letterCount <= 64;
+    }
+
+    /**
+     * Get the number of a letter, i.e. its bit in a letter set.
+     * @param c The letter.
+     * @return Returns the letter number, or -1 if no word uses the letter.
+     */
+    public int letterOf(char c) {
+        return (c < charIndex.length) ? charIndex[c] : -1;
+    }
+
+    /**
+     * Find which allowed letters each position of a word can actually
+     * take: the letters at that position of the words that only use
+     * allowed letters at every position.
+     * @param len The word length.
+     * @param allowed The set of allowed letters at each position.
+     * @param supported Set to the letters of {@code allowed} that some
+     *                  such word has at each position.
+     * @return Returns {@code false} if no word of the length uses only
+     * allowed letters.
+     */
+    boolean supportLetters(int len, long[] allowed, long[] supported) {
+        long range = letterSetRange(len, allowed);
+        if (range < 0) return false;
+        long[] used = present[len];
+        for (int pos = 0; pos < len; pos++) {
+            supported[pos] = 0;
+        }
+
+        boolean found = false;
+        for (int block = (int) (range >>> 32); block < (int) range; block++) {
+            long acc = letterSetBlock(len, allowed, block);
+            if (acc == 0) continue;
+            found = true;
+
+            // Credit each letter still unsupported that a word here has.
+            boolean complete = true;
+            for (int pos = 0; pos < len; pos++) {
+                long missing = allowed[pos] & used[pos] & ~supported[pos];
+                for (long rest = missing; rest != 0; rest &= rest - 1) {
+                    int letter = Long.numberOfTrailingZeros(rest);
+                    if ((bits[len][pos][letter][block] & acc) != 0) {
+                        supported[pos] |= 1L << letter;
+                    }
+                }
+                if (supported[pos] != (allowed[pos] & used[pos])) complete = false;
+            }
+            if (complete) break;
+        }
+        return found;
+    }
+
+    /**
+     * Test whether any word has an allowed letter at every position.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @return Returns {@code true} if at least one word fits.
+     */
+    public boolean hasLetterSetMatch(long[] allowed) {
+        int len = allowed.length;
+        long range = letterSetRange(len, allowed);
+        if (range < 0) return false;
+        for (int block = (int) (range >>> 32); block < (int) range; block++) {
+            if (letterSetBlock(len, allowed, block) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count the words with an allowed letter at every position.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @return Returns the number of words that fit.
+     */
+    public int countLetterSets(long[] allowed) {
+        int len = allowed.length;
+        long range = letterSetRange(len, allowed);
+        if (range < 0) return 0;
+        int total = 0;
+        for (int block = (int) (range >>> 32); block < (int) range; block++) {
+            total += Long.bitCount(letterSetBlock(len, allowed, block));
+        }
+        return total;
+    }
+
+    /**
+     * Find the IDs of the words with an allowed letter at every position,
+     * without allocating.
+     * @param allowed The set of allowed letters at each position.  Its
+     *                length is the word length.
+     * @param ids A buffer to receive the IDs, in increasing order.  Must
+     *            hold at least {@code getWordCount(allowed.length)} entries.
+     * @return Returns the number of IDs written to {@code ids}.
+     */
+    public int matchLetterSets(long[] allowed, int[] ids) {
+        int len = allowed.length;
+        long range = letterSetRange(len, allowed);
+        if (range < 0) return 0;
+        int n = 0;
+        for (int block = (int) (range >>> 32); block < (int) range; block++) {
+            long acc = letterSetBlock(len, allowed, block);
+            while (acc != 0) {
+                ids[n++] = (block << 6) + Long.numberOfTrailingZeros(acc);
+                acc &= acc - 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Find the blocks that can hold a word using only allowed letters.
+     * Words are sorted, so each letter's bitset spans a range of blocks,
+     * and only the blocks inside every constrained position's ranges need
+     * scanning.
+     * @param len The word length.
+     * @param allowed The set of allowed letters at each position.
+     * @return Returns the first block shifted left 32 bits, ORed with one
+     * past the last block, or -1 if some position allows no letter used
+     * there.
+     */
+    private long letterSetRange(int len, long[] allowed) {
+        if (len >= words.length || words[len].length == 0) return -1;
+        long[] used = present[len];
+        int start = 0;
+        int end = (words[len].length + 63) >>> 6;
+        for (int pos = 0; pos < len; pos++) {
+            long a = allowed[pos] & used[pos];
+            if (a == 0) return -1;
+            if (a == used[pos]) continue;
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            for (long rest = a; rest != 0; rest &= rest - 1) {
+                int letter = Long.numberOfTrailingZeros(rest);
+                first = Math.min(first, firstBlock[len][pos][letter]);
+                last = Math.max(last, lastBlock[len][pos][letter]);
+            }
+            start = Math.max(start, first);
+            end = Math.min(end, last + 1);
+        }
+        return (start < end) ? ((long) start << 32) | end : -1;
+    }
+
+    /**
+     * Get one 64-word block of the set of words that only use allowed
+     * letters.  Positions that allow every letter used there rule out no
+     * word, so only the others are ANDed.
+     * @param len The word length.
+     * @param allowed The set of allowed letters at each position.
+     * @param block The block number.
+     * @return Returns the block's bits.
+     */
+    private long letterSetBlock(int len, long[] allowed, int block) {
+        long[] used = present[len];
+        long acc = -1L;
+        int over = ((block + 1) << 6) - words[len].length;
+        if (over > 0) acc = -1L >>> over;
+        for (int pos = 0; pos < len && acc != 0; pos++) {
+            long a = allowed[pos] & used[pos];
+            if (a != used[pos]) acc &= allowedBlock(len, pos, a, block);
+        }
+        return acc;
+    }
+
+    /**
+     * Get one 64-word block of the set of words with an allowed letter at
+     * a position.  Each word has one letter per position, so this is the
+     * union of the allowed letters' bitsets, or the complement of the union
+     * of the others, whichever has fewer letters.
+     * @param len The word length.
+     * @param pos The position.
+     * @param a The allowed letters that are used at the position.
+     * @param block The block number.
+     * @return Returns the block's bits.
+     */
+    private long allowedBlock(int len, int pos, long a, int block) {
+        long excluded = present[len][pos] & ~a;
+        boolean invert = Long.bitCount(excluded) < Long.bitCount(a);
+        long union = 0;
+        for (long rest = invert ? excluded : a; rest != 0; rest &= rest - 1) {
+            union |= bits[len][pos][Long.numberOfTrailingZeros(rest)][block];
+        }
+        return invert ? ~union : union;
+    }
+
+    /*--------------------------------------
+    *
+    * Pattern-match methods.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Check whether a pattern can match anything at all: its length is in
+     * range and every fixed letter appears at that position in some word.
+     * @param pattern The pattern to check.
+     * @return Returns {@code false} if the pattern cannot match.
+     */
+    private boolean usable(char[] pattern) {
+        int len = pattern.length;
+        if (len >= words.length || words[len].length == 0) return false;
+        for (int pos = 0; pos < len; pos++) {
+            char c = pattern[pos];
+            if (c == '.') continue;
+            if (c >= charIndex.length || charIndex[c] < 0 ||
+                    bits[len][pos][charIndex[c]] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the first block that can hold a match for a usable pattern.
+     * @param pattern A usable pattern.
+     * @return Returns the first block to scan.
+     */
+    private int startBlock(char[] pattern) {
+        int len = pattern.length;
+        int start = 0;
+        for (int pos = 0; pos < len; pos++) {
+            char c = pattern[pos];
+            if (c != '.') start = Math.max(start, firstBlock[len][pos][charIndex[c]]);
+        }
+        return start;
+    }
+
+    /**
+     * Get the block after the last one that can hold a match for a usable
+     * pattern.
+     * @param pattern A usable pattern.
+     * @return Returns the end of the range of blocks to scan.
+     */
+    private int endBlock(char[] pattern) {
+        int len = pattern.length;
+        int end = (words[len].length + 63) >>> 6;
+        for (int pos = 0; pos < len; pos++) {
+            char c = pattern[pos];
+            if (c != '.') end = Math.min(end, lastBlock[len][pos][charIndex[c]] + 1);
+        }
+        return end;
+    }
+
+    /**
+     * Get one 64-word block of the set of words matching a pattern.
+     * @param pattern A usable pattern.
+     * @param block The block number.
+     * @return Returns the block's match bits.
+     */
+    private long matchBlock(char[] pattern, int block) {
+        int len = pattern.length;
+        long acc = -1L;
+        for (int pos = 0; pos < len && acc != 0; pos++) {
+            char c = pattern[pos];
+            if (c != '.') acc &= bits[len][pos][charIndex[c]][block];
+        }
+        // Clear the unused bits past the last word.
+        int over = ((block + 1) << 6) - words[len].length;
+        if (over > 0) acc &= -1L >>> over;
+        return acc;
+    }
+
+    /**
+     * Test whether any word matches a pattern, without allocating.
+     * @param pattern The pattern to match.
+     * @return Returns {@code true} if at least one word matches.
+     */
+    public boolean hasMatch(char[] pattern) {
+        if (!usable(pattern)) return false;
+        int end = endBlock(pattern);
+        for (int block = startBlock(pattern); block < end; block++) {
+            if (matchBlock(pattern, block) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count the words matching a pattern, without allocating.
+     * @param pattern The pattern to match.
+     * @return Returns the number of matching words.
+     */
+    public int countPattern(char[] pattern) {
+        if (!usable(pattern)) return 0;
+        int end = endBlock(pattern);
+        int total = 0;
+        for (int block = startBlock(pattern); block < end; block++) {
+            total += Long.bitCount(matchBlock(pattern, block));
+        }
+        return total;
+    }
+
+    @Override
+    public int matchIds(char[] pattern, int[] ids) {
+        if (!usable(pattern)) return 0;
+        int end = endBlock(pattern);
+        int n = 0;
+        for (int block = startBlock(pattern); block < end; block++) {
+            long acc = matchBlock(pattern, block);
+            while (acc != 0) {
+                ids[n++] = (block << 6) + Long.numberOfTrailingZeros(acc);
+                acc &= acc - 1;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean hasMatch(String pattern) {
+        return hasMatch(pattern.toCharArray());
+    }
+
+    @Override
+    public int countPattern(String pattern) {
+        return countPattern(pattern.toCharArray());
+    }
+
+    @Override
+    public Iterable<String> matchPattern(String pattern) {
+        int len = pattern.length();
+        ArrayList<String> matches = new ArrayList<String>();
+        if (len >= words.length) return matches;
+        int[] ids = new int[words[len].length];
+        int n = matchIds(pattern.toCharArray(), ids);
+        for (int i = 0; i < n; i++) {
+            matches.add(words[len][ids[i]]);
+        }
+        return matches;
+    }
+
+    /*--------------------------------------
+    *
+    * The following prefix-match methods are not required for operation of WordSquare.
+    *
+    * --------------------------------------*/
+
+    @Override
+    public Iterable<String> matchPrefix(String prefix) {
+        ArrayList<String> found = new ArrayList<String>();
+        for (int len = prefix.length(); len < words.length; len++) {
+            // Words sharing the prefix are contiguous in sorted order.
+            int id = Arrays.binarySearch(words[len], prefix);
+            if (id < 0) id = -id - 1;
+            while (id < words[len].length && words[len][id].startsWith(prefix)) {
+                found.add(words[len][id]);
+                id++;
+            }
+        }
+        if (found.size() == 0) return null;
+        return found;
+    }
+}
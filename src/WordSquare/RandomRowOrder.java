@@ -0,0 +1,37 @@
+package WordSquare;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@code RandomRowOrder} fills open rows in a random order.  It is mainly
+ * useful as a baseline when comparing other orderings on the same inputs.
+ */
+public class RandomRowOrder implements RowOrder {
+    private final Random random;
+
+    /**
+     * Create a random ordering with an unpredictable seed.
+     */
+    public RandomRowOrder() {
+        random = new Random();
+    }
+
+    /**
+     * Create a random ordering that repeats for a given seed.
+     * @param seed The seed for the random number generator.
+     */
+    public RandomRowOrder(long seed) {
+        random = new Random(seed);
+    }
+
+    @Override
+    public int select(int[] searchRows, int pos, IntUnaryOperator candidates) {
+        return pos + random.nextInt(searchRows.length - pos);
+    }
+
+    @Override
+    public IntUnaryOperator counts(IntUnaryOperator exact, IntUnaryOperator estimated) {
+        return exact;
+    }
+}
@@ -0,0 +1,35 @@
+package WordSquare;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@code RowOrder} is a strategy for choosing which open row the
+ * {@code WordSquare} search fills next.  Implementations may choose the
+ * same order every time or may look at the current partial word square.
+ */
+public interface RowOrder {
+
+    /**
+     * Choose the next open row to fill.
+     * @param searchRows The word square positions still to be searched.
+     *                   Positions from {@code pos} to the end of the array
+     *                   are open; earlier positions are already filled.
+     * @param pos The first open index in {@code searchRows}.
+     * @param candidates Returns the number of word bank words that fit a
+     *                   given word square position under the current
+     *                   partial word square.
+     * @return Returns the index in {@code searchRows}, between {@code pos}
+     * and the end of the array, of the row to fill next.
+     */
+    int select(int[] searchRows, int pos, IntUnaryOperator candidates);
+
+    /**
+     * Choose how candidates are counted for {@code select}.
+     * @param exact Counts the words that fit a position by querying the
+     *              dictionary.
+     * @param estimated Estimates the same count from letter statistics,
+     *                  more cheaply.
+     * @return Returns the counting function to pass to {@code select}.
+     */
+    IntUnaryOperator counts(IntUnaryOperator exact, IntUnaryOperator estimated);
+}
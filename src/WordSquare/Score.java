@@ -2,39 +2,107 @@ package WordSquare;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
 
 /**
  * {@code Score} is a class to load, hold and retrieve word/score data.
  * Word scoring is used to rank completed word squares for quality.
+ * <p>
+ * The word/score table is loaded once, the first time any {@code Score} is
+ * created, and never changed afterwards.  Every {@code Score} shares it, and
+ * any number of threads may query it at once.
  */
 public class Score {
-    private static HashMap<String, Long> wordScores = new HashMap<>();
     private static final String SCORES = "resources/scores.txt";
 
     /**
-     * The constructor loads the static word/score data structure into memory
-     * only if it has not already been loaded by another {@code Score} object.
+     * The constructor loads the shared word/score table into memory only if
+     * it has not already been loaded by another {@code Score} object.
      */
     public Score() {
-        if (wordScores.size() <= 0) {
+        preload();
+    }
+
+    /**
+     * Load the shared word/score table now, if it isn't loaded already.
+     * Safe to call from any thread.
+     */
+    public static void preload() {
+        Table.load();
+    }
+
+    /**
+     * Compute a checksum of the raw score table file, to tell whether
+     * scores saved from it are stale.
+     * @return Returns the CRC-32 of the score table file.
+     * @throws IOException If the score table can't be read.
+     */
+    static long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = Score.class.getResourceAsStream(SCORES);
+        if (in == null) throw new IOException("Missing " + SCORES);
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * {@code Table} holds the shared word/score data.  It is loaded by the
+     * class initializer, which the JVM runs exactly once, and whose writes
+     * every thread sees, so concurrent first uses can't load it twice or see
+     * it half-built.
+     * <p>
+     * The table is an open-addressing hash table of two parallel primitive
+     * arrays, probed linearly from the word's hash.  Each slot holds the
+     * score and a key giving where the word's letters sit in one shared
+     * {@code char[]}, so there is no entry object, no boxed score and no
+     * {@code String} per word.  At most half the slots are used, so most
+     * lookups find their word, or an empty slot, on the first probe.
+     */
+    private static class Table {
+        // The letters of every word, end to end.
+        static final char[] LETTERS;
+        // For each slot, the word's offset into LETTERS shifted left by 4,
+        // OR its length, or 0 for an empty slot.
+        static final int[] KEYS;
+        static final long[] VALUES;
+        // The table size minus one.  The size is a power of 2.
+        static final int MASK;
+        // The highest score of any word, indexed by word length.  Words
+        // missing from the table score 1, so no length can score less.
+        static final long[] MAX_SCORES = {1, 1, 1, 1, 1, 1, 1};
+
+        static {
+            ArrayList<String> words = new ArrayList<String>();
+            ArrayList<Long> scores = new ArrayList<Long>();
             try {
-                InputStreamReader ir = new InputStreamReader(getClass().getResourceAsStream(SCORES));
+                InputStreamReader ir = new InputStreamReader(Score.class.getResourceAsStream(SCORES));
                 BufferedReader reader = new BufferedReader(ir);
                 String workingLine;
                 String[] lineArray;
 
-                // Add each word/score pair line by line
+                // Read each word/score pair line by line
                 while (true) {
                     workingLine = reader.readLine();
                     if (workingLine == null) {
                         break;
                     } else {
                         lineArray = workingLine.split("\t");
-                        String word = lineArray[0];
-                        Long wordScore = Long.parseLong(lineArray[1]);
-                        wordScores.put(word, wordScore);
+                        // Longer words can never be scored.
+                        if (lineArray[0].length() == 0 || lineArray[0].length() > 15) continue;
+                        words.add(lineArray[0]);
+                        scores.add(Long.parseLong(lineArray[1]));
                     }
                 }
 
@@ -46,6 +114,66 @@ public class Score {
                 // Make a popup?  With a button to try to load the score table again?
                 ex.printStackTrace();
             }
+
+            // Size the table to at most half full.
+            int size = Integer.highestOneBit(Math.max(1, words.size()) * 2 - 1) << 1;
+            char[] letters = new char[1024];
+            int used = 0;
+            KEYS = new int[size];
+            VALUES = new long[size];
+            MASK = size - 1;
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                long wordScore = scores.get(i);
+                // A repeated word keeps its last score.
+                int slot = slot(word, letters);
+                if (KEYS[slot] == 0) {
+                    if (used + word.length() > letters.length) {
+                        letters = Arrays.copyOf(letters, letters.length * 2);
+                    }
+                    word.getChars(0, word.length(), letters, used);
+                    KEYS[slot] = (used << 4) | word.length();
+                    used += word.length();
+                }
+                VALUES[slot] = wordScore;
+                int len = word.length();
+                if (len < MAX_SCORES.length && wordScore > MAX_SCORES[len]) {
+                    MAX_SCORES[len] = wordScore;
+                }
+            }
+            LETTERS = Arrays.copyOf(letters, used);
+        }
+
+        /**
+         * Do nothing.  Calling it runs the initializer, if it hasn't run.
+         */
+        static void load() {}
+
+        /**
+         * Find the slot holding a word, or the empty slot where it belongs.
+         * @param word The word to find.
+         * @param letters The letters of the words in the table.
+         * @return Returns the slot index.
+         */
+        static int slot(String word, char[] letters) {
+            // Spread the hash, since String hashes of short words cluster.
+            int h = word.hashCode() * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & MASK;
+            int key;
+            while ((key = KEYS[slot]) != 0 && !matches(word, key, letters)) {
+                slot = (slot + 1) & MASK;
+            }
+            return slot;
+        }
+
+        private static boolean matches(String word, int key, char[] letters) {
+            int len = key & 15;
+            if (len != word.length()) return false;
+            int start = key >>> 4;
+            for (int i = 0; i < len; i++) {
+                if (letters[start + i] != word.charAt(i)) return false;
+            }
+            return true;
         }
     }
 
@@ -56,12 +184,16 @@ public class Score {
      * returns a score of 1.
      */
     public long getWordScore(String word) {
+        int slot = Table.slot(word, Table.LETTERS);
+        return (Table.KEYS[slot] != 0) ? Table.VALUES[slot] : 1;
+    }
 
-        if (wordScores.containsKey(word)) {
-            Long wordScore = wordScores.get(word);
-            return wordScore;
-        } else {
-            return 1;
-        }
+    /**
+     * Finds the highest score any word of a given length can have.
+     * @param len The word length.
+     * @return Returns the highest score of any word of the given length.
+     */
+    public long getMaxScore(int len) {
+        return Table.MAX_SCORES[len];
     }
 }
@@ -0,0 +1,66 @@
+package WordSquare;
+
+/**
+ * {@code ScoreMetric} names the three ways a set of solutions can be
+ * ranked, and knows how to bound each one for a partial word square.
+ */
+public enum ScoreMetric {
+    /** Rank by the combined score of all square words. */
+    TOTAL {
+        @Override
+        public long of(Solution sol) {
+            return sol.getTotalScore();
+        }
+
+        @Override
+        public long upperBound(long total, long low, int open, long maxOpen, int len) {
+            return total + open * maxOpen;
+        }
+    },
+
+    /** Rank by the lowest individual word score. */
+    LOW {
+        @Override
+        public long of(Solution sol) {
+            return sol.getLowScore();
+        }
+
+        @Override
+        public long upperBound(long total, long low, int open, long maxOpen, int len) {
+            return (open > 0) ? Math.min(low, maxOpen) : low;
+        }
+    },
+
+    /** Rank by the average word score. */
+    AVERAGE {
+        @Override
+        public long of(Solution sol) {
+            return sol.getAverageScore();
+        }
+
+        @Override
+        public long upperBound(long total, long low, int open, long maxOpen, int len) {
+            return (total + open * maxOpen) / len;
+        }
+    };
+
+    /**
+     * Get this metric's value for a solution.
+     * @param sol The solution to rank.
+     * @return Returns the solution's score under this metric.
+     */
+    public abstract long of(Solution sol);
+
+    /**
+     * Get the highest score any completion of a partial word square could
+     * reach under this metric.
+     * @param total The combined score of the words already in the square.
+     * @param low The lowest score of the words already in the square, or
+     *            {@code Long.MAX_VALUE} if there are none.
+     * @param open The number of rows still to be filled.
+     * @param maxOpen The highest score any word of this length can have.
+     * @param len The word square size.
+     * @return Returns an upper bound on the score of any completion.
+     */
+    public abstract long upperBound(long total, long low, int open, long maxOpen, int len);
+}
@@ -0,0 +1,406 @@
+package WordSquare;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * {@code SearchMetrics} counts what a search does: words placed at each
+ * depth, dictionary queries and their result sizes, letter-set propagation
+ * work, branches pruned, solutions found, and the time spent querying the
+ * dictionary, propagating, scoring and collecting solutions.
+ * <p>
+ * Each search thread counts into its own {@code Local} with plain fields,
+ * and adds its counts to the shared {@code LongAdder}s every
+ * {@code FLUSH_NODES} words placed and when it finishes, so the hot path
+ * has no locks or shared writes.  Reading the clock costs about as much as
+ * placing a word, so only one in {@code SAMPLE_RATE} of each thread's
+ * timed calls is actually timed, and its time counted {@code SAMPLE_RATE}
+ * times.  Counts are exact.  Together this keeps the metrics cheap enough
+ * to leave on in production.
+ * <p>
+ * Reads may be taken at any time, including while a search runs, and see
+ * a recent but not necessarily consistent snapshot.  Counters cover the
+ * most recent search, or the searches since the last {@code reset}.
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+    // Time one in this many calls.  Must be a power of 2.
+    private static final int SAMPLE_RATE = 16;
+    // Publish a thread's counts after this many words placed.  Must be a
+    // power of 2.
+    private static final int FLUSH_NODES = 1024;
+
+    // Words placed, by search depth.  Depth 0 is the first open row filled.
+    private final LongAdder[] nodes = new LongAdder[WordBank.MAX_LENGTH];
+    private final LongAdder matchCalls = new LongAdder();
+    private final LongAdder matchResults = new LongAdder();
+    private final LongAdder boundPrunes = new LongAdder();
+    private final LongAdder forwardCheckPrunes = new LongAdder();
+    private final LongAdder propagations = new LongAdder();
+    private final LongAdder revisions = new LongAdder();
+    private final LongAdder lettersRemoved = new LongAdder();
+    private final LongAdder propagationPrunes = new LongAdder();
+    private final LongAdder propagationNanos = new LongAdder();
+    private final LongAdder solutions = new LongAdder();
+    private final LongAdder dictionaryNanos = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+    private final LongAdder collectionNanos = new LongAdder();
+    // When the current search started and ended, or 0 if it hasn't ended.
+    private volatile long startNanos = System.nanoTime();
+    private volatile long endNanos = 0;
+
+    public SearchMetrics() {
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, under
+     * {@code WordSquare:type=SearchMetrics,name=}<i>name</i>.
+     * @param name The name to register under.
+     * @throws JMException If the name is taken or can't be registered.
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("WordSquare:type=SearchMetrics,name=" + ObjectName.quote(name)));
+    }
+
+    /*--------------------------------------
+    *
+    * Recording methods, called by the search.
+    *
+    * --------------------------------------*/
+
+    void searchStarted() {
+        endNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    void searchEnded() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Make a new set of counters for one search thread.
+     * @return Returns counters that add to these metrics when flushed.
+     */
+    Local local() {
+        return new Local();
+    }
+
+    /**
+     * {@code Local} holds one search thread's counts until they are added
+     * to the shared metrics.  It must only be used by one thread at a time.
+     * Each recording method that takes a start time takes the
+     * {@code System.nanoTime()} when the recorded work started, or 0 if the
+     * work wasn't timed.
+     */
+    class Local {
+        private final long[] nodeCounts = new long[nodes.length];
+        private long matchCallCount = 0;
+        private long matchResultCount = 0;
+        private long boundPruneCount = 0;
+        private long forwardCheckPruneCount = 0;
+        private long propagationCount = 0;
+        private long revisionCount = 0;
+        private long removedCount = 0;
+        private long propagationPruneCount = 0;
+        private long propagationTime = 0;
+        private long solutionCount = 0;
+        private long dictionaryTime = 0;
+        private long scoringTime = 0;
+        private long collectionTime = 0;
+        // Words placed since the last flush.
+        private int pending = 0;
+        // Calls to sampleTime.
+        private int ticks = 0;
+
+        /**
+         * Read the clock for one in {@code SAMPLE_RATE} calls.
+         * @return Returns {@code System.nanoTime()}, or 0 if this call isn't
+         * sampled.
+         */
+        long sampleTime() {
+            return ((ticks++ & (SAMPLE_RATE - 1)) == 0) ? System.nanoTime() : 0;
+        }
+
+        void node(int depth) {
+            nodeCounts[depth]++;
+            if ((++pending & (FLUSH_NODES - 1)) == 0) flush();
+        }
+
+        void match(int results, long start) {
+            matchCallCount++;
+            matchResultCount += results;
+            if (start != 0) dictionaryTime += (System.nanoTime() - start) * SAMPLE_RATE;
+        }
+
+        void forwardCheck(boolean passed, long start) {
+            if (!passed) forwardCheckPruneCount++;
+            if (start != 0) dictionaryTime += (System.nanoTime() - start) * SAMPLE_RATE;
+        }
+
+        void revision(int removed) {
+            revisionCount++;
+            removedCount += removed;
+        }
+
+        void propagation(boolean passed, long start) {
+            propagationCount++;
+            if (!passed) propagationPruneCount++;
+            if (start != 0) propagationTime += (System.nanoTime() - start) * SAMPLE_RATE;
+        }
+
+        void bound(boolean passed, long start) {
+            if (!passed) boundPruneCount++;
+            if (start != 0) scoringTime += (System.nanoTime() - start) * SAMPLE_RATE;
+        }
+
+        void solution(long start) {
+            solutionCount++;
+            if (start != 0) collectionTime += (System.nanoTime() - start) * SAMPLE_RATE;
+        }
+
+        /**
+         * Add the counts so far to the shared metrics, and zero them.
+         */
+        void flush() {
+            for (int i = 0; i < nodeCounts.length; i++) {
+                if (nodeCounts[i] != 0) nodes[i].add(nodeCounts[i]);
+                nodeCounts[i] = 0;
+            }
+            matchCalls.add(matchCallCount);
+            matchResults.add(matchResultCount);
+            boundPrunes.add(boundPruneCount);
+            forwardCheckPrunes.add(forwardCheckPruneCount);
+            propagations.add(propagationCount);
+            revisions.add(revisionCount);
+            lettersRemoved.add(removedCount);
+            propagationPrunes.add(propagationPruneCount);
+            propagationNanos.add(propagationTime);
+            solutions.add(solutionCount);
+            dictionaryNanos.add(dictionaryTime);
+            scoringNanos.add(scoringTime);
+            collectionNanos.add(collectionTime);
+            matchCallCount = 0;
+            matchResultCount = 0;
+            boundPruneCount = 0;
+            forwardCheckPruneCount = 0;
+            propagationCount = 0;
+            revisionCount = 0;
+            removedCount = 0;
+            propagationPruneCount = 0;
+            propagationTime = 0;
+            solutionCount = 0;
+            dictionaryTime = 0;
+            scoringTime = 0;
+            collectionTime = 0;
+            pending = 0;
+        }
+    }
+
+    /*--------------------------------------
+    *
+    * Reading methods.
+    *
+    * --------------------------------------*/
+
+    /**
+     * Get the number of words placed.
+     * @return Returns the total over all depths.
+     */
+    @Override
+    public long getNodeCount() {
+        long total = 0;
+        for (LongAdder count : nodes) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of words placed at each search depth.
+     * @return Returns the counts, indexed by depth.
+     */
+    @Override
+    public long[] getNodesByDepth() {
+        long[] counts = new long[nodes.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = nodes[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Get the number of pattern queries made to the dictionary.
+     * @return Returns the query count.
+     */
+    @Override
+    public long getMatchCalls() {
+        return matchCalls.sum();
+    }
+
+    /**
+     * Get the average number of words matching a dictionary query.
+     * @return Returns the average result size, or 0 if there were none.
+     */
+    @Override
+    public double getAverageMatchSize() {
+        long calls = matchCalls.sum();
+        return (calls == 0) ? 0 : (double) matchResults.sum() / calls;
+    }
+
+    /**
+     * Get the number of branches cut because no completion could enter the
+     * top-K results.
+     * @return Returns the pruned branch count.
+     */
+    @Override
+    public long getBoundPrunes() {
+        return boundPrunes.sum();
+    }
+
+    /**
+     * Get the number of branches cut because an open row had no match.
+     * @return Returns the pruned branch count.
+     */
+    @Override
+    public long getForwardCheckPrunes() {
+        return forwardCheckPrunes.sum();
+    }
+
+    /**
+     * Get the number of times letter sets were propagated, once per word
+     * placed and once at the start of each search, when propagation is on.
+     * @return Returns the propagation count.
+     */
+    @Override
+    public long getPropagations() {
+        return propagations.sum();
+    }
+
+    /**
+     * Get the number of times an open row's letter sets were checked
+     * against the dictionary while propagating.
+     * @return Returns the row revision count.
+     */
+    @Override
+    public long getRevisions() {
+        return revisions.sum();
+    }
+
+    /**
+     * Get the number of letters dropped from cells' letter sets while
+     * propagating.
+     * @return Returns the removed letter count.
+     */
+    @Override
+    public long getLettersRemoved() {
+        return lettersRemoved.sum();
+    }
+
+    /**
+     * Get the number of branches cut because propagation left a cell with
+     * no possible letter.
+     * @return Returns the pruned branch count.
+     */
+    @Override
+    public long getPropagationPrunes() {
+        return propagationPrunes.sum();
+    }
+
+    /**
+     * Get the number of solutions found.
+     * @return Returns the solution count.
+     */
+    @Override
+    public long getSolutionCount() {
+        return solutions.sum();
+    }
+
+    /**
+     * Get the rate solutions were found at.
+     * @return Returns solutions per second of elapsed time.
+     */
+    @Override
+    public double getSolutionsPerSecond() {
+        long nanos = getElapsedNanos();
+        return (nanos == 0) ? 0 : solutions.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Get the time since the search started, or its duration if it ended.
+     * @return Returns the elapsed time in nanoseconds.
+     */
+    @Override
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return ((end == 0) ? System.nanoTime() : end) - startNanos;
+    }
+
+    /**
+     * Get the time spent in dictionary queries and forward checks, summed
+     * over all search threads.
+     * @return Returns the time in nanoseconds.
+     */
+    @Override
+    public long getDictionaryNanos() {
+        return dictionaryNanos.sum();
+    }
+
+    /**
+     * Get the time spent propagating letter sets, summed over all search
+     * threads.
+     * @return Returns the time in nanoseconds.
+     */
+    @Override
+    public long getPropagationNanos() {
+        return propagationNanos.sum();
+    }
+
+    /**
+     * Get the time spent scoring partial squares for top-K pruning, summed
+     * over all search threads.
+     * @return Returns the time in nanoseconds.
+     */
+    @Override
+    public long getScoringNanos() {
+        return scoringNanos.sum();
+    }
+
+    /**
+     * Get the time spent building solutions and handing them to the sink,
+     * summed over all search threads.
+     * @return Returns the time in nanoseconds.
+     */
+    @Override
+    public long getCollectionNanos() {
+        return collectionNanos.sum();
+    }
+
+    /**
+     * Zero every counter and restart the clock.
+     */
+    @Override
+    public void reset() {
+        for (LongAdder count : nodes) {
+            count.reset();
+        }
+        matchCalls.reset();
+        matchResults.reset();
+        boundPrunes.reset();
+        forwardCheckPrunes.reset();
+        propagations.reset();
+        revisions.reset();
+        lettersRemoved.reset();
+        propagationPrunes.reset();
+        propagationNanos.reset();
+        solutions.reset();
+        dictionaryNanos.reset();
+        scoringNanos.reset();
+        collectionNanos.reset();
+        searchStarted();
+    }
+}
@@ -0,0 +1,27 @@
+package WordSquare;
+
+/**
+ * {@code SearchMetricsMXBean} is the management interface of
+ * {@code SearchMetrics}, so search counters can be watched from JConsole or
+ * any other JMX client.  Times are in nanoseconds.
+ */
+public interface SearchMetricsMXBean {
+    long getNodeCount();
+    long[] getNodesByDepth();
+    long getMatchCalls();
+    double getAverageMatchSize();
+    long getBoundPrunes();
+    long getForwardCheckPrunes();
+    long getPropagations();
+    long getRevisions();
+    long getLettersRemoved();
+    long getPropagationPrunes();
+    long getSolutionCount();
+    double getSolutionsPerSecond();
+    long getElapsedNanos();
+    long getDictionaryNanos();
+    long getPropagationNanos();
+    long getScoringNanos();
+    long getCollectionNanos();
+    void reset();
+}
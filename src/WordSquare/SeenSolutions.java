@@ -0,0 +1,161 @@
+package WordSquare;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+
+/**
+ * {@code SeenSolutions} remembers which word squares have already been
+ * produced, so repeated or overlapping searches only report each square
+ * once.  Squares are compared in their canonical form, by the words they
+ * hold, so a square found again by a search with different locked rows is
+ * still recognized.
+ * <p>
+ * It can be backed by a file, in which case the squares seen by earlier
+ * runs are loaded when it is opened, and each new square is appended as
+ * its two-{@code long} packed key.  Squares using a seed word that isn't in
+ * the dictionary have no key and are only remembered in memory.  The file
+ * starts with a header of {@code MAGIC}, {@code VERSION} and the word bank
+ * checksum.  Keys are word IDs, so a file from a different version or word
+ * bank is emptied when opened rather than marking the wrong squares as
+ * seen.  A partly written last key is cut off.
+ * <p>
+ * All methods are synchronized, so one instance may be shared by any
+ * number of searches.
+ */
+public class SeenSolutions implements Closeable {
+    private static final int MAGIC = 0x57535353; // "WSSS"
+    private static final int VERSION = 1;
+    // The header size in bytes.
+    private static final int HEADER = 4 + 4 + 8;
+    // The size of one key in bytes.
+    private static final int ENTRY = 8 * 2;
+
+    private final HashSet<Solution> seen = new HashSet<Solution>();
+    // The file new keys are appended to, or null if not persistent.
+    private final DataOutputStream log;
+    private long duplicates = 0;
+
+    /**
+     * Make an empty in-memory set.
+     */
+    public SeenSolutions() {
+        log = null;
+    }
+
+    /**
+     * Open a set backed by a file, loading any squares it already holds.
+     * @param file The file of seen squares.  It is created if missing, and
+     *             emptied if it was written for another word bank.
+     * @throws IOException If the file can't be read or opened for append.
+     */
+    public SeenSolutions(File file) throws IOException {
+        long checksum = WordBank.checksum();
+        long end = 0;
+        if (file.isFile()) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION &&
+                        in.readLong() == checksum) {
+                    end = HEADER;
+                    while (true) {
+                        long rows0to3 = in.readLong();
+                        long rows4to5 = in.readLong();
+                        seen.add(new Solution(null, rows0to3, rows4to5));
+                        end += ENTRY;
+                    }
+                }
+            } catch (EOFException ex) {
+                // End of the file.
+            } finally {
+                in.close();
+            }
+        }
+        // Keep the header and whole keys only, so appends stay aligned.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(end);
+            if (end == 0) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeLong(checksum);
+            }
+        } finally {
+            raf.close();
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Record a square as seen.
+     * @param sol The square.
+     * @return Returns {@code true} if the square hadn't been seen before.
+     * @throws IOException If the square can't be appended to the file.
+     */
+    public synchronized boolean add(Solution sol) throws IOException {
+        if (!seen.add(sol)) {
+            duplicates++;
+            return false;
+        }
+        if (log != null && sol.isKeyed()) {
+            log.writeLong(sol.getKey(0));
+            log.writeLong(sol.getKey(1));
+        }
+        return true;
+    }
+
+    /**
+     * Wrap a sink so it only receives squares not seen before.  Each square
+     * passed on is recorded as seen.
+     * @param next The sink to receive new squares.
+     * @return Returns the filtering sink.
+     */
+    public SolutionSink filter(final SolutionSink next) {
+        return new SolutionSink() {
+            @Override
+            public boolean accept(Solution solution) {
+                try {
+                    return !add(solution) || next.accept(solution);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the number of distinct squares seen, including those loaded from
+     * the file.
+     * @return Returns the square count.
+     */
+    public synchronized int size() {
+        return seen.size();
+    }
+
+    /**
+     * Get the number of squares offered again after they had been seen.
+     * @return Returns the duplicate count.
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Flush and close the backing file, if any.
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) log.close();
+    }
+}
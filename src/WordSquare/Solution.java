@@ -3,50 +3,188 @@ package WordSquare;
 /**
  * {@code Solution} is a class to hold a valid word square and three score
  * metrics for ranking a set of solutions.
+ * <p>
+ * A search can find millions of solutions, so each one is kept small: the
+ * square is stored as up to six 16-bit word IDs packed into two
+ * {@code long}s, and the words themselves are looked up from a
+ * {@code Source} shared by every solution of the search.  Scores are only
+ * computed the first time one is asked for.
+ * <p>
+ * Every dictionary word is stored by its ID, including seed words, so the
+ * packed IDs are a canonical form of the square: two solutions are equal
+ * when they hold the same words, whichever search found them and whichever
+ * rows were locked.
  */
 public class Solution {
-    private String[] solutionWords; // A valid word square.
-    private long totalScore = 0; // All word scores combined.
-    private long averageScore = 0; // The average of all word scores.
+    // An ID meaning the row holds the source's seed word for that row.
+    private static final int SEED = 0xFFFF;
+    // The largest word count a dictionary may have for IDs to fit.
+    static final int MAX_IDS = SEED;
+
+    private final Source source; // The dictionary and seed words.
+    private final long rows0to3; // The word IDs of rows 0 to 3, 16 bits each.
+    private final long rows4to5; // The word IDs of rows 4 and 5, then the size.
     private long lowScore = 0; // The lowest individual word score.
+    // All word scores combined, or 0 until computed.  Written after
+    // lowScore, and volatile, so a thread that sees it also sees lowScore.
+    private volatile long totalScore = 0;
 
     /**
-     * Each {@code Solution} calculates its own scores on construction.
+     * Each {@code Solution} calculates its own scores when first asked.
      * @param squareWords A valid word square.
      * @param scorer A {@code Score} instance for this {@code Solution}
      * instance to query.
      */
     public Solution(String[] squareWords, Score scorer) {
-        // Get wordScores
-        solutionWords = squareWords;
-        int len = solutionWords[0].length();
-        long[] wordScores = new long[len];
-        for(int i = 0; i < len; i++) {
-            String word = solutionWords[i];
-            long points = scorer.getWordScore(word);
-            wordScores[i] = points;
+        this(new Source(null, squareWords, scorer), new int[] {-1, -1, -1, -1, -1, -1},
+                squareWords[0].length());
+    }
+
+    /**
+     * Make a solution from word IDs.
+     * @param source The dictionary and seed words.
+     * @param ids The word ID of each row, or -1 for a row holding the seed
+     *            word.  Only the first {@code len} entries are used.
+     * @param len The word square size.
+     */
+    Solution(Source source, int[] ids, int len) {
+        this.source = source;
+        long packed0 = 0;
+        long packed1 = (long) len << 32;
+        for (int row = 0; row < len; row++) {
+            long id = (ids[row] < 0) ? SEED : ids[row];
+            if (row < 4) packed0 |= id << (16 * row);
+            else packed1 |= id << (16 * (row - 4));
         }
+        rows0to3 = packed0;
+        rows4to5 = packed1;
+    }
+
+    /**
+     * Make a solution from its packed key, as returned by {@code getKey}.
+     * @param source The dictionary the IDs refer to.
+     * @param rows0to3 The first half of the key.
+     * @param rows4to5 The second half of the key.
+     */
+    Solution(Source source, long rows0to3, long rows4to5) {
+        this.source = source;
+        this.rows0to3 = rows0to3;
+        this.rows4to5 = rows4to5;
+    }
+
+    /**
+     * Make a solution from its packed key and scores computed earlier, as
+     * kept by a {@code SolutionStore}.
+     * @param source The dictionary the IDs refer to and the seed words.
+     * @param rows0to3 The first half of the key.
+     * @param rows4to5 The second half of the key.
+     * @param totalScore The total score.
+     * @param lowScore The lowest word score.
+     */
+    Solution(Source source, long rows0to3, long rows4to5, long totalScore, long lowScore) {
+        this(source, rows0to3, rows4to5);
+        this.lowScore = lowScore;
+        this.totalScore = totalScore;
+    }
+
+    private int size() {
+        return (int) (rows4to5 >>> 32);
+    }
+
+    private int id(int row) {
+        long packed = (row < 4) ? rows0to3 : rows4to5;
+        return (int) (packed >>> (16 * (row & 3))) & 0xFFFF;
+    }
 
-        // Calculate totalScore; Find lowScore
+    private String word(int row) {
+        int id = id(row);
+        return (id == SEED) ? source.seeds[row] : source.dict.getWord(size(), id);
+    }
+
+    /**
+     * Check whether every row holds a dictionary word, so the packed IDs
+     * alone identify the square.
+     * @return Returns {@code false} if any row holds a seed word that isn't
+     * in the dictionary.
+     */
+    boolean isKeyed() {
+        for (int row = 0; row < size(); row++) {
+            if (id(row) == SEED) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the packed word IDs identifying this square.  Only meaningful when
+     * {@code isKeyed}.
+     * @param half 0 for rows 0 to 3, 1 for rows 4 and 5 and the size.
+     * @return Returns that half of the key.
+     */
+    long getKey(int half) {
+        return (half == 0) ? rows0to3 : rows4to5;
+    }
+
+    /**
+     * Check whether this square agrees with a partial word square.
+     * @param squareWords A partial word square; open rows are {@code null}.
+     * @return Returns {@code true} if every word of the partial square is in
+     * the same row of this one.
+     */
+    boolean fits(String[] squareWords) {
+        for (int row = 0; row < squareWords.length; row++) {
+            if (squareWords[row] == null) continue;
+            if (row >= size() || !squareWords[row].equals(word(row))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Solution)) return false;
+        Solution other = (Solution) o;
+        if (rows0to3 != other.rows0to3 || rows4to5 != other.rows4to5) return false;
+        for (int row = 0; row < size(); row++) {
+            if (id(row) == SEED && !word(row).equals(other.word(row))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(rows0to3 * 31 + rows4to5);
+        for (int row = 0; row < size(); row++) {
+            if (id(row) == SEED) hash = hash * 31 + word(row).hashCode();
+        }
+        return hash;
+    }
+
+    // Calculate totalScore and lowScore.  Racing threads compute the same
+    // values, so it doesn't matter which write is seen.
+    private void score() {
+        int len = size();
+        long total = 0;
+        long low = Long.MAX_VALUE;
         for (int i = 0; i < len; i++) {
-            long thisScore = wordScores[i];
-            totalScore += thisScore;
-            if (i == 0) {
-                lowScore = thisScore;
-            } else if (thisScore < lowScore) {
-                lowScore = thisScore;
-            }
+            long thisScore = source.scorer.getWordScore(word(i));
+            total += thisScore;
+            if (thisScore < low) low = thisScore;
         }
-        // Calculate averageScore
-        averageScore = (totalScore / len);
+        lowScore = low;
+        totalScore = total;
     }
 
     /**
      * Get a copy of the square words for this {@code Solution}.
-     * @return Returns an array of Strings, of length between 2 and 6.
+     * @return Returns an array of six Strings, one per row, with
+     * {@code null} for rows beyond the square size.
      */
     public String[] getSolutionWords() {
-        return solutionWords.clone();
+        String[] words = new String[6];
+        for (int row = 0; row < size(); row++) {
+            words[row] = word(row);
+        }
+        return words;
     }
 
     /**
@@ -54,6 +192,7 @@ public class Solution {
      * @return Returns the long total word score.
      */
     public long getTotalScore() {
+        if (totalScore == 0) score();
         return totalScore;
     }
 
@@ -62,7 +201,7 @@ public class Solution {
      * @return Returns the long average word score.
      */
     public long getAverageScore() {
-        return averageScore;
+        return getTotalScore() / size();
     }
 
     /**
@@ -70,6 +209,29 @@ public class Solution {
      * @return Returns the lowest individual word score.
      */
     public long getLowScore() {
+        if (totalScore == 0) score();
         return lowScore;
     }
+
+    /**
+     * {@code Source} holds what every solution of one search shares: the
+     * dictionary its word IDs refer to, the seed words and the scorer.
+     */
+    static class Source {
+        private final WordDictionary dict;
+        private final String[] seeds;
+        private final Score scorer;
+
+        /**
+         * @param dict The dictionary word IDs refer to.
+         * @param seeds The words the user placed, by row; other rows may be
+         *              {@code null}.
+         * @param scorer The scorer for solution words.
+         */
+        Source(WordDictionary dict, String[] seeds, Score scorer) {
+            this.dict = dict;
+            this.seeds = seeds;
+            this.scorer = scorer;
+        }
+    }
 }
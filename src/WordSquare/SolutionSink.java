@@ -0,0 +1,22 @@
+package WordSquare;
+
+/**
+ * {@code SolutionSink} receives each {@code Solution} as soon as the
+ * {@code WordSquare} search finds it, so callers can display, filter or
+ * store solutions without waiting for the whole search to finish.
+ * <p>
+ * The search calls {@code accept} on the searching thread and does not
+ * continue until it returns, so a slow sink slows the search rather than
+ * letting unconsumed solutions pile up in memory.  Calls are never made
+ * concurrently, even for a parallel search.
+ */
+public interface SolutionSink {
+
+    /**
+     * Receive a newly found solution.
+     * @param solution A complete word square.
+     * @return Returns {@code true} to continue the search, or {@code false}
+     * to stop it.
+     */
+    boolean accept(Solution solution);
+}
@@ -0,0 +1,361 @@
+package WordSquare;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * {@code SolutionStore} keeps the complete results of earlier searches in a
+ * file, so a search for a partial word square that has been solved before
+ * can be answered from disk instead of searched again.
+ * <p>
+ * Results are keyed by the partial word square searched, i.e. the words
+ * placed and their rows, as returned by {@code WordSquare.getSquareWords}.
+ * The file holds, in big-endian order:
+ * <ul>
+ *     <li>a header: {@code MAGIC}, {@code VERSION}, the word bank checksum
+ *     and the score table checksum</li>
+ *     <li>one record per stored search, each holding the key, written by
+ *     {@code DataOutputStream.writeUTF}, the solution count, and then each
+ *     solution, ranked best first by {@code ORDER}, as its two-{@code long}
+ *     packed key followed by its total and low scores</li>
+ * </ul>
+ * Records are only ever appended.  A search stored again gets a new record,
+ * which replaces the old one when the file is next opened.  When more than
+ * half of the file is replaced records, opening it rewrites it with only the
+ * latest record for each key.  The file never grows past
+ * {@code MAX_LENGTH}; a result that doesn't fit isn't stored.  A file from a
+ * different version or word bank is emptied when opened, since its word IDs
+ * may no longer match, and so is one from a different score table, since
+ * its scores and ranking may no longer match.  A partly written last record
+ * is cut off.
+ * <p>
+ * Only the record offsets are read when the file is opened.  A stored
+ * result is a memory-mapped view of its record, and each solution is read
+ * when it is asked for, so any page of a large result can be shown without
+ * reading the rest of it.  Word IDs refer to the word bank dictionary, so
+ * a store should only be used with searches of the word bank.
+ * <p>
+ * All methods are synchronized, so one instance may be shared by any
+ * number of searches.  The file is locked while it is opened and while a
+ * record is appended, so several processes may share one store file.
+ */
+public class SolutionStore implements Closeable {
+    private static final int MAGIC = 0x57535352; // "WSSR"
+    private static final int VERSION = 2;
+    // The header size in bytes.
+    private static final int HEADER = 4 + 4 + 8 + 8;
+    // The size of one stored solution in bytes.
+    private static final int ENTRY = 8 * 4;
+    // The most solutions one record may hold, so it can be mapped at once.
+    static final int MAX_SOLUTIONS = Integer.MAX_VALUE / ENTRY;
+    /** The largest the store file may grow to, in bytes. */
+    public static final long MAX_LENGTH = 256L << 20;
+
+    private final File path;
+
+    /** The ranking stored results are kept in, the GUI's default. */
+    public static final ScoreMetric ORDER = ScoreMetric.LOW;
+
+    private RandomAccessFile file;
+    // The offset and solution count of the latest record for each key.
+    private final HashMap<String, long[]> records = new HashMap<String, long[]>();
+
+    /**
+     * Get the default store file, in the {@code .wordsquare} directory
+     * under the user's home directory.
+     * @return Returns the default store file.
+     */
+    public static File defaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".wordsquare"),
+                "solutions.store");
+    }
+
+    /**
+     * Open the store in the default file, creating it if missing.
+     * @return Returns the opened store.
+     * @throws IOException If the store can't be created or read.
+     */
+    public static SolutionStore open() throws IOException {
+        File file = defaultFile();
+        file.getParentFile().mkdirs();
+        return new SolutionStore(file);
+    }
+
+    /**
+     * Open a store file, creating it if missing, and read where each of its
+     * records starts.
+     * @param file The store file.
+     * @throws IOException If the file can't be created or read.
+     */
+    public SolutionStore(File file) throws IOException {
+        path = file;
+        this.file = new RandomAccessFile(file, "rw");
+        try {
+            FileLock lock = this.file.getChannel().lock();
+            try {
+                long checksum = WordBank.checksum();
+                long scoreChecksum = Score.checksum();
+                if (this.file.length() < HEADER || this.file.readInt() != MAGIC ||
+                        this.file.readInt() != VERSION || this.file.readLong() != checksum ||
+                        this.file.readLong() != scoreChecksum) {
+                    this.file.setLength(0);
+                    this.file.writeInt(MAGIC);
+                    this.file.writeInt(VERSION);
+                    this.file.writeLong(checksum);
+                    this.file.writeLong(scoreChecksum);
+                }
+                scan();
+                if (liveLength() * 2 < this.file.length()) compact();
+            } finally {
+                if (lock.isValid()) lock.release();
+            }
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        }
+    }
+
+    // Index every complete record, and cut off a partly written last one.
+    private void scan() throws IOException {
+        long end = HEADER;
+        long length = file.length();
+        try {
+            while (end < length) {
+                file.seek(end);
+                String key = file.readUTF();
+                int count = file.readInt();
+                long start = file.getFilePointer();
+                long next = start + (long) count * ENTRY;
+                if (count < 0 || next > length) break;
+                records.put(key, new long[] {start, count});
+                end = next;
+            }
+        } catch (EOFException ex) {
+            // A partly written record header.
+        }
+        if (end < length) file.setLength(end);
+    }
+
+    // The length the file would have with only the latest records.
+    private long liveLength() {
+        long length = HEADER;
+        for (Map.Entry<String, long[]> record : records.entrySet()) {
+            length += record.getKey().length() + 6 + record.getValue()[1] * ENTRY;
+        }
+        return length;
+    }
+
+    // Rewrite the file with only the latest record for each key, and switch
+    // to the new file.  Called with the old file locked, so no other
+    // process appends in between; one that already has the old file open
+    // keeps appending to it, and those records are dropped.
+    private void compact() throws IOException {
+        File temp = new File(path.getPath() + ".tmp");
+        HashMap<String, long[]> moved = new HashMap<String, long[]>();
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            file.seek(0);
+            byte[] header = new byte[HEADER];
+            file.readFully(header);
+            out.write(header);
+            byte[] entries = new byte[64 * 1024];
+            for (Map.Entry<String, long[]> record : records.entrySet()) {
+                long[] at = record.getValue();
+                out.writeUTF(record.getKey());
+                out.writeInt((int) at[1]);
+                // The byte count is an int, but MAX_LENGTH keeps it exact.
+                moved.put(record.getKey(), new long[] {out.size(), at[1]});
+                file.seek(at[0]);
+                long left = at[1] * ENTRY;
+                while (left > 0) {
+                    int n = (int) Math.min(left, entries.length);
+                    file.readFully(entries, 0, n);
+                    out.write(entries, 0, n);
+                    left -= n;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        file.close();
+        file = new RandomAccessFile(path, "rw");
+        records.clear();
+        records.putAll(moved);
+    }
+
+    /**
+     * Make the key for a partial word square: the word in each row, or an
+     * empty string for an open row, separated by commas.
+     * @param seeds The partial word square; open rows are {@code null}.
+     * @return Returns the key, or {@code null} if no row is filled.
+     */
+    static String key(String[] seeds) {
+        int len = 0;
+        for (String seed : seeds) {
+            if (seed != null) {
+                len = seed.length();
+                break;
+            }
+        }
+        if (len == 0) return null;
+        StringBuilder key = new StringBuilder();
+        for (int row = 0; row < len; row++) {
+            if (row > 0) key.append(',');
+            if (seeds[row] != null) key.append(seeds[row]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Look up the stored result of a search.
+     * @param seeds The partial word square searched.
+     * @param dict The word bank dictionary the stored word IDs refer to.
+     * @param scorer The scorer for any solution whose scores are asked for
+     *               again.
+     * @return Returns a read-only list of the stored solutions, ranked best
+     * first by {@code ORDER}, or {@code null} if the search isn't stored.
+     * @throws IOException If the record can't be mapped.
+     */
+    public synchronized Result find(String[] seeds, WordDictionary dict, Score scorer)
+            throws IOException {
+        String key = key(seeds);
+        long[] record = (key == null) ? null : records.get(key);
+        if (record == null) return null;
+        MappedByteBuffer entries = file.getChannel().map(
+                FileChannel.MapMode.READ_ONLY, record[0], record[1] * ENTRY);
+        return new Result(new Solution.Source(dict, seeds.clone(), scorer), entries,
+                (int) record[1]);
+    }
+
+    /**
+     * Check whether the result of a search is stored.
+     * @param seeds The partial word square searched.
+     * @return Returns {@code true} if it is stored.
+     */
+    public synchronized boolean contains(String[] seeds) {
+        String key = key(seeds);
+        return key != null && records.containsKey(key);
+    }
+
+    /**
+     * Store the complete result of a search, replacing any earlier result
+     * for the same partial word square.  Nothing is stored if the record
+     * would take the file past {@code MAX_LENGTH}.
+     * @param seeds The partial word square searched.
+     * @param solutions Every solution of the search.
+     * @throws IOException If the record can't be written.
+     */
+    public synchronized void add(String[] seeds, Collection<Solution> solutions)
+            throws IOException {
+        String key = key(seeds);
+        if (key == null || solutions.size() > MAX_SOLUTIONS) return;
+        ArrayList<Solution> sorted = new ArrayList<Solution>(solutions);
+        sorted.sort(new Comparator<Solution>() {
+            @Override
+            public int compare(Solution o1, Solution o2) {
+                return Long.compare(ORDER.of(o2), ORDER.of(o1));
+            }
+        });
+
+        // Build the whole record first, so it is written in one piece.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                key.length() + 6 + sorted.size() * ENTRY);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.writeInt(sorted.size());
+        int entriesStart = out.size();
+        for (Solution sol : sorted) {
+            out.writeLong(sol.getKey(0));
+            out.writeLong(sol.getKey(1));
+            out.writeLong(sol.getTotalScore());
+            out.writeLong(sol.getLowScore());
+        }
+        out.close();
+
+        // Lock the file, so records appended by other processes can't
+        // interleave with this one.
+        FileLock lock = file.getChannel().lock();
+        try {
+            long end = file.length();
+            if (end + bytes.size() > MAX_LENGTH) return;
+            file.seek(end);
+            file.write(bytes.toByteArray());
+            records.put(key, new long[] {end + entriesStart, sorted.size()});
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Get the number of searches stored.
+     * @return Returns the number of distinct partial word squares stored.
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Close the store file.  Results already found stay readable.
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * {@code Result} is a read-only list of the solutions of one stored
+     * search.  Solutions are read from the mapped record when asked for,
+     * with their stored scores, so fetching one costs the same wherever it
+     * is in the list.  The mapped record is only read with absolute gets, so
+     * a result is safe for concurrent readers.
+     */
+    public static class Result extends AbstractList<Solution> implements RandomAccess {
+        private final Solution.Source source;
+        private final MappedByteBuffer entries;
+        private final int size;
+
+        private Result(Solution.Source source, MappedByteBuffer entries, int size) {
+            this.source = source;
+            this.entries = entries;
+            this.size = size;
+        }
+
+        @Override
+        public Solution get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int at = index * ENTRY;
+            return new Solution(source, entries.getLong(at), entries.getLong(at + 8),
+                    entries.getLong(at + 16), entries.getLong(at + 24));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package WordSquare;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@code StaticRowOrder} fills open rows from top to bottom, regardless
+ * of the current partial word square.
+ */
+public class StaticRowOrder implements RowOrder {
+
+    @Override
+    public int select(int[] searchRows, int pos, IntUnaryOperator candidates) {
+        return pos;
+    }
+
+    @Override
+    public IntUnaryOperator counts(IntUnaryOperator exact, IntUnaryOperator estimated) {
+        return exact;
+    }
+}
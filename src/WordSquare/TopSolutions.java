@@ -0,0 +1,84 @@
+package WordSquare;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * {@code TopSolutions} is a {@code SolutionSink} that keeps only the best
+ * {@code k} solutions under a {@code ScoreMetric}.  Solutions are held in a
+ * min-heap, so memory stays proportional to {@code k} and the weakest kept
+ * solution is always at hand for comparison.
+ */
+public class TopSolutions implements SolutionSink {
+    private final ScoreMetric metric;
+    private final int k;
+    private final PriorityQueue<Solution> heap;
+    // The score a new solution must beat once the heap is full.
+    private volatile long threshold = Long.MIN_VALUE;
+
+    /**
+     * Create an empty collector.
+     * @param metric The metric to rank solutions by.
+     * @param k The number of solutions to keep.  Must be at least 1.
+     */
+    public TopSolutions(final ScoreMetric metric, int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        this.metric = metric;
+        this.k = k;
+        heap = new PriorityQueue<Solution>(k, new Comparator<Solution>() {
+            @Override
+            public int compare(Solution o1, Solution o2) {
+                return Long.compare(metric.of(o1), metric.of(o2));
+            }
+        });
+    }
+
+    @Override
+    public boolean accept(Solution solution) {
+        if (heap.size() < k) {
+            heap.add(solution);
+        } else if (metric.of(solution) > metric.of(heap.peek())) {
+            heap.poll();
+            heap.add(solution);
+        } else {
+            return true;
+        }
+        if (heap.size() == k) threshold = metric.of(heap.peek());
+        return true;
+    }
+
+    /**
+     * Check whether a branch whose completions can score at most
+     * {@code bound} could still place a solution in the top {@code k}.
+     * @param bound An upper bound on the branch's score under this
+     *              collector's metric.
+     * @return Returns {@code false} if no solution in the branch can be kept.
+     */
+    public boolean canImprove(long bound) {
+        return bound > threshold;
+    }
+
+    /**
+     * Get the metric this collector ranks by.
+     * @return Returns the ranking metric.
+     */
+    public ScoreMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Get the kept solutions, best first.
+     * @return Returns a new {@code ArrayList} of at most {@code k} solutions.
+     */
+    public ArrayList<Solution> getSolutions() {
+        ArrayList<Solution> list = new ArrayList<Solution>(heap);
+        list.sort(new Comparator<Solution>() {
+            @Override
+            public int compare(Solution o1, Solution o2) {
+                return Long.compare(metric.of(o2), metric.of(o1));
+            }
+        });
+        return list;
+    }
+}
@@ -0,0 +1,157 @@
+package WordSquare;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * {@code WordBank} reads the word bank file shared by every dictionary
+ * implementation.
+ */
+class WordBank {
+    // The shortest and longest words a word square can use.
+    static final int MIN_LENGTH = 3;
+    static final int MAX_LENGTH = 6;
+
+    private static final String WORD_BANK = "resources/wordBank.csv";
+
+    private WordBank() {}
+
+    /**
+     * Read all usable words from the word bank, in file order.
+     * @return Returns a list of lowercase words between {@code MIN_LENGTH}
+     * and {@code MAX_LENGTH} letters long.
+     */
+    static ArrayList<String> load() {
+        ArrayList<String> words = new ArrayList<String>();
+        try {
+            // Open word bank file as a stream.
+            InputStreamReader ir = new InputStreamReader(
+                    WordBank.class.getResourceAsStream(WORD_BANK));
+            BufferedReader reader = new BufferedReader(ir);
+
+            // Keep each line of a usable length.
+            String workingLine = reader.readLine();
+            while (workingLine != null) {
+                workingLine = workingLine.trim().toLowerCase();
+                if ((workingLine.length() >= MIN_LENGTH) &&
+                        (workingLine.length() <= MAX_LENGTH)) {
+                    words.add(workingLine);
+                }
+                workingLine = reader.readLine();
+            }
+
+            // Close the file stream.
+            reader.close();
+        } catch (IOException ex) { ex.printStackTrace(); }
+        return words;
+    }
+
+    /**
+     * Compute a checksum of the raw word bank file, to tell whether data
+     * built from it is stale.
+     * @return Returns the CRC-32 of the word bank file.
+     * @throws IOException If the word bank can't be read.
+     */
+    static long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = WordBank.class.getResourceAsStream(WORD_BANK);
+        if (in == null) throw new IOException("Missing " + WORD_BANK);
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Read all usable words from the word bank, sorted with duplicates
+     * removed.
+     * @return Returns a sorted list of distinct words.
+     */
+    static ArrayList<String> loadSorted() {
+        return new ArrayList<String>(new TreeSet<String>(load()));
+    }
+
+    /**
+     * Split a sorted word list by word length.  A word's ID is its position
+     * in the array for its length, so IDs follow sorted order and each
+     * length numbers its words from 0.
+     * @param sorted A sorted list of distinct words.
+     * @return Returns an array, indexed by length, of sorted word arrays.
+     */
+    static String[][] byLength(List<String> sorted) {
+        ArrayList<ArrayList<String>> lists = new ArrayList<ArrayList<String>>();
+        for (int len = 0; len <= MAX_LENGTH; len++) {
+            lists.add(new ArrayList<String>());
+        }
+        for (String word : sorted) {
+            lists.get(word.length()).add(word);
+        }
+        String[][] words = new String[MAX_LENGTH + 1][];
+        for (int len = 0; len <= MAX_LENGTH; len++) {
+            words[len] = lists.get(len).toArray(new String[0]);
+        }
+        return words;
+    }
+
+    /**
+     * Number the distinct characters a list of words uses in alphabetical
+     * order, so a letter set numbered this way lists its letters in the
+     * same order as a search tree holds them.
+     * @param words The words.
+     * @return Returns an array mapping each character up to the largest one
+     * used to its letter number, or -1 if no word uses it.
+     */
+    static int[] letterNumbers(Iterable<String> words) {
+        char maxChar = 0;
+        for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+                if (word.charAt(i) > maxChar) maxChar = word.charAt(i);
+            }
+        }
+        boolean[] used = new boolean[maxChar + 1];
+        for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+                used[word.charAt(i)] = true;
+            }
+        }
+        int[] numbers = new int[maxChar + 1];
+        int letters = 0;
+        for (int c = 0; c <= maxChar; c++) {
+            numbers[c] = used[c] ? letters++ : -1;
+        }
+        return numbers;
+    }
+
+    /**
+     * Reorder a sorted word list so that inserting it into a search tree
+     * gives a balanced tree: the median word comes first, then the medians
+     * of each half, and so on.
+     * @param sorted A sorted list of words.
+     * @return Returns a new list of the same words in median-first order.
+     */
+    static ArrayList<String> medianOrder(List<String> sorted) {
+        ArrayList<String> ordered = new ArrayList<String>(sorted.size());
+        addMedians(sorted, 0, sorted.size(), ordered);
+        return ordered;
+    }
+
+    private static void addMedians(List<String> sorted, int lo, int hi, List<String> ordered) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        ordered.add(sorted.get(mid));
+        addMedians(sorted, lo, mid, ordered);
+        addMedians(sorted, mid + 1, hi, ordered);
+    }
+}
@@ -0,0 +1,66 @@
+package WordSquare;
+
+/**
+ * {@code WordDictionary} is the query interface shared by the word bank
+ * dictionary implementations.  Patterns are {@code String}s in which
+ * {@code .} characters are treated as wildcards.  Implementations are
+ * immutable once constructed and safe for concurrent readers.
+ */
+public interface WordDictionary {
+
+    /**
+     * Find all word bank words that match a given pattern.
+     * @param pattern The pattern to match.
+     * @return Returns an {@code Iterable} list of word bank words matching
+     * the given pattern.
+     */
+    Iterable<String> matchPattern(String pattern);
+
+    /**
+     * Test whether any word bank word matches a given pattern.
+     * @param pattern The pattern to match.
+     * @return Returns {@code true} if at least one word bank word matches.
+     */
+    boolean hasMatch(String pattern);
+
+    /**
+     * Count the word bank words that match a given pattern.
+     * @param pattern The pattern to match.
+     * @return Returns the number of matching word bank words.
+     */
+    int countPattern(String pattern);
+
+    /**
+     * Find the IDs of all word bank words that match a given pattern,
+     * without allocating.  Words are numbered separately for each length, in
+     * sorted order, so IDs are the same for every implementation.
+     * @param pattern The pattern to match.  Its length is the word length.
+     * @param ids A buffer to receive the matching IDs.  Must hold at least
+     *            {@code getWordCount(pattern.length)} entries.
+     * @return Returns the number of IDs written to {@code ids}.
+     */
+    int matchIds(char[] pattern, int[] ids);
+
+    /**
+     * Get the number of word bank words of a given length.
+     * @param len The word length.
+     * @return Returns the number of words of that length.
+     */
+    int getWordCount(int len);
+
+    /**
+     * Get a word bank word by its length and ID.
+     * @param len The word length.
+     * @param id The word's ID among words of that length.
+     * @return Returns the word.
+     */
+    String getWord(int len, int id);
+
+    /**
+     * Find all word bank words that start with a given prefix.
+     * @param prefix The prefix to match.  No wildcards are allowed.
+     * @return Returns an {@code Iterable} list of matching word bank words,
+     * or {@code null} if there are none.
+     */
+    Iterable<String> matchPrefix(String prefix);
+}
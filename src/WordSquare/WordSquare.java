@@ -1,6 +1,10 @@
 package WordSquare;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
 
 /**
  * {@code WordSquare} is a class to coordinate building word squares.
@@ -17,10 +21,18 @@ public class WordSquare {
     * ------------------------------------------------*/
 
     // An object to find matching words for a particular word square position.
-    private DictionaryTernary dict = new DictionaryTernary();
+    private final WordDictionary dict;
+
+    // An index to test for and count matches without building words.  It
+    // also holds every word, so words are looked up by ID here: a snapshot
+    // or DAWG dictionary builds a new String for each lookup.
+    private final PatternIndex index;
+
+    // Letter statistics for each word length, for the search heuristics.
+    private final LengthStats[] lengthStats;
 
     // An object to score solutions according to n-gram data.
-    private Score score = new Score();
+    private final Score score = new Score();
 
     // The list of found solutions.
     private ArrayList<Solution> solutionList = new ArrayList<Solution>();
@@ -28,6 +40,169 @@ public class WordSquare {
     // A list of words making up a partial word square.
     private String[] squareWords = new String[6];
 
+    // Whether to check every remaining open row for a match after each
+    // placement, and backtrack right away if any row has none.
+    private boolean forwardChecking = false;
+
+    // Whether to narrow each cell's set of possible letters after each
+    // placement, and backtrack right away if any cell has none left.
+    private boolean propagation = false;
+
+    // The strategy for choosing which open row to fill next.
+    private RowOrder rowOrder = new StaticRowOrder();
+
+    // Whether to split the search across all cores.
+    private boolean parallel = false;
+
+    // The number of search levels split into separate tasks in parallel mode.
+    private static final int PARALLEL_DEPTH = 2;
+
+    // Counters and timings for the most recent search.
+    private final SearchMetrics metrics = new SearchMetrics();
+
+    // The duration of the most recent search, in milliseconds.
+    private long elapsedTime = 0;
+
+    // The sink receiving solutions from the search in progress.
+    private SolutionSink solutionSink;
+
+    // The maximum number of solutions to deliver, or 0 for no limit.
+    private long solutionLimit = 0;
+
+    // The number of solutions delivered by the search in progress.
+    private long delivered = 0;
+
+    // Set to end the search in progress early.
+    private volatile boolean stopped = false;
+
+    // Set by cancel and kept until resetCancel, so that a cancel made
+    // before the next search starts still stops it.
+    private volatile boolean cancelled = false;
+
+    // The top-K collector used to prune branches, if any.
+    private TopSolutions topSolutions;
+
+    // Serializes deliveries to the solution sink.
+    private final Object deliveryLock = new Object();
+
+    // Whether to answer a search from the last complete search's results
+    // when its seeds are still in place.  Off by default, since it keeps
+    // every solution of the last search alive.
+    private boolean reuseResults = false;
+
+    // The seeds and every solution of the last complete search, or null.
+    private String[] lastSeeds;
+    private ArrayList<Solution> lastResults;
+
+    // The solutions of the search in progress, if they are being kept.
+    private ArrayList<Solution> remembered;
+
+    // The most memory the kept solutions may use (16 MB), at about 56 bytes
+    // each: the Solution object and its list slot.  A search with more
+    // solutions isn't kept.
+    private static final int MAX_REMEMBERED = (16 << 20) / 56;
+
+    // The file of earlier complete results to answer searches from and add
+    // to, or null.
+    private SolutionStore solutionStore;
+
+    // The most word IDs the default pattern cache holds (4 MB).
+    private static final int PATTERN_CACHE_IDS = 1 << 20;
+
+    /**
+     * Create a {@code WordSquare} backed by the default word bank dictionary.
+     * The default dictionary and its index are loaded once and shared by
+     * every {@code WordSquare} created this way, so this is cheap after the
+     * first call.
+     */
+    public WordSquare() {
+        this(Shared.DICT, Shared.INDEX, Shared.STATS);
+    }
+
+    /**
+     * Create a {@code WordSquare} backed by a given word bank dictionary.
+     * @param dict The dictionary to search for matching words.
+     */
+    public WordSquare(WordDictionary dict) {
+        this(dict, new PatternIndex(dict));
+    }
+
+    private WordSquare(WordDictionary dict, PatternIndex index) {
+        this(dict, index, LengthStats.forAll(index));
+    }
+
+    private WordSquare(WordDictionary dict, PatternIndex index, LengthStats[] lengthStats) {
+        this.dict = dict;
+        this.index = index;
+        this.lengthStats = lengthStats;
+    }
+
+    /**
+     * Load the default dictionary, its index and the score table now, rather
+     * than on first use.  Safe to call from any thread, and any number of
+     * times; the data is only loaded once.
+     */
+    public static void preload() {
+        Shared.INDEX.getWordCount(0);
+        Score.preload();
+    }
+
+    /**
+     * {@code Shared} holds the default dictionary, its index and letter
+     * statistics.  They are built when the class is first used, and the JVM
+     * runs a class's initializer exactly once and makes its results visible
+     * to every thread, so no further locking is needed.  All three are
+     * immutable apart from the pattern cache, which is thread-safe.
+     */
+    private static class Shared {
+        // A cache of recent pattern matches in front of the dictionary.
+        static final WordDictionary DICT = new PatternCache(openDictionary(), PATTERN_CACHE_IDS);
+        static final PatternIndex INDEX = new PatternIndex(DICT);
+        static final LengthStats[] STATS = LengthStats.forAll(INDEX);
+    }
+
+    /** The system property that picks the default dictionary backend. */
+    public static final String DICTIONARY_PROPERTY = "wordsquare.dictionary";
+
+    /**
+     * Check whether a name is a valid {@code wordsquare.dictionary} value.
+     * @param backend The backend name.
+     * @return Returns {@code true} for {@code dawg}, {@code ternary},
+     * {@code snapshot} or an empty string, ignoring case.
+     */
+    public static boolean isDictionaryName(String backend) {
+        return backend.isEmpty() || backend.equalsIgnoreCase("dawg") ||
+                backend.equalsIgnoreCase("ternary") || backend.equalsIgnoreCase("snapshot");
+    }
+
+    /**
+     * Open the default dictionary.  The {@code wordsquare.dictionary} system
+     * property picks the backend: {@code dawg} for {@code DictionaryDawg},
+     * {@code ternary} for {@code DictionaryTernary}, and {@code snapshot},
+     * or no value, for the binary snapshot.  The snapshot falls back to
+     * building a {@code DictionaryTernary} from the word bank if it can't be
+     * written or read.  Whichever is chosen, the {@code PatternIndex} built
+     * over it still holds every word, so the choice changes how patterns
+     * are matched, not how much memory the word list takes.
+     * @return Returns the dictionary.
+     * @throws IllegalArgumentException If the property names no backend.
+     */
+    private static WordDictionary openDictionary() {
+        String backend = System.getProperty(DICTIONARY_PROPERTY, "");
+        if (!isDictionaryName(backend)) {
+            throw new IllegalArgumentException("Unknown dictionary \"" + backend +
+                    "\"; use dawg, ternary or snapshot");
+        }
+        if (backend.equalsIgnoreCase("dawg")) return new DictionaryDawg();
+        if (backend.equalsIgnoreCase("ternary")) return new DictionaryTernary();
+        try {
+            return DictionarySnapshot.open();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return new DictionaryTernary();
+        }
+    }
+
     /* -----------------------------------------------
     *
     * Methods to initiate and manage search.
@@ -39,6 +214,91 @@ public class WordSquare {
      * solutions for the current user-created partial word square.
      */
     public void buildAllSolutions() {
+        buildSolutions(new SolutionSink() {
+            @Override
+            public boolean accept(Solution solution) {
+                solutionList.add(solution);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Search for complete word square solutions for the current
+     * user-created partial word square, passing each one to a sink as soon
+     * as it is found.  Solutions are not kept in the solution list.
+     * @param sink The {@code SolutionSink} to receive each solution.
+     */
+    public void buildSolutions(SolutionSink sink) {
+        buildSolutions(sink, 0);
+    }
+
+    /**
+     * Search for complete word square solutions for the current
+     * user-created partial word square, passing each one to a sink as soon
+     * as it is found.  The search stops early when the sink returns
+     * {@code false}, when {@code limit} solutions have been delivered, or
+     * when {@code cancel} is called.  A search started after
+     * {@code cancel} and before {@code resetCancel} returns immediately.
+     * Solutions are not kept in the solution list.
+     * @param sink The {@code SolutionSink} to receive each solution.
+     * @param limit The maximum number of solutions to deliver, or {@code 0}
+     *              for no limit.
+     */
+    public void buildSolutions(SolutionSink sink, long limit) {
+        solutionSink = sink;
+        solutionLimit = limit;
+        delivered = 0;
+        stopped = cancelled;
+        try {
+            search();
+        } finally {
+            solutionSink = null;
+        }
+    }
+
+    /**
+     * Search for the best {@code k} solutions for the current user-created
+     * partial word square under a given metric.  Only {@code k} solutions
+     * are held at any time, and once {@code k} have been found, branches
+     * whose best possible score cannot beat the weakest kept solution are
+     * skipped.  Solutions are not kept in the solution list.
+     * @param metric The metric to rank solutions by.
+     * @param k The number of solutions to keep.
+     * @return Returns a new {@code ArrayList} of at most {@code k}
+     * solutions, best first.
+     */
+    public ArrayList<Solution> buildTopSolutions(ScoreMetric metric, int k) {
+        TopSolutions top = new TopSolutions(metric, k);
+        topSolutions = top;
+        try {
+            buildSolutions(top);
+        } finally {
+            topSolutions = null;
+        }
+        return top.getSolutions();
+    }
+
+    /**
+     * Stop the search in progress, if any, and any search started before
+     * the next call to {@code resetCancel}.  May be called from any
+     * thread; the search returns promptly after the current word placement.
+     */
+    public void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+    /**
+     * Clear an earlier {@code cancel} so that the next search runs.  Call
+     * this before handing the search to another thread, not from that
+     * thread, or a cancel made in between is lost.
+     */
+    public void resetCancel() {
+        cancelled = false;
+    }
+
+    private void search() {
         // Initialize variables.
         int len = 0;
         int squarePos = 0;
@@ -76,6 +336,11 @@ public class WordSquare {
             return;
         }
 
+        // Solutions hold word IDs in 16 bits each.
+        if (dict.getWordCount(len) > Solution.MAX_IDS) {
+            throw new IllegalStateException("Too many words of length " + len);
+        }
+
         // Make searchRows:
         // [squareWords position][current wordBank position][difficulty]
         int[] searchRows = new int[searchWordCount];
@@ -87,34 +352,263 @@ public class WordSquare {
             }
         }
 
-        Iterable[] matches = new Iterable[searchRows.length];
+        // Start the build
+        metrics.reset();
+        long start = System.currentTimeMillis();
+        // Search a copy so the partial square can be changed from another
+        // thread while a cancelled search unwinds.
+        String[] seeds = squareWords.clone();
+        if (!replay(seeds) && !recall(seeds)) {
+            Solution.Source source = new Solution.Source(index, seeds, score);
+            // Pick the statistics for this size once for the whole search.
+            SearchState st = new SearchState(seeds.clone(), searchRows, len, source,
+                    lengthStats[len]);
+            // Store seed words by ID too, so solutions are in canonical form.
+            for (int row = 0; row < len; row++) {
+                if (seeds[row] != null) st.rowIds[row] = findId(seeds[row], st.idBuffer(0));
+            }
+            if (propagation && index.hasLetterSets()) {
+                st.domains = new LetterDomains(index, st.square, len, st.counters);
+            }
+            // Remember the results only if the search will find them all.
+            remembered = ((reuseResults || solutionStore != null) &&
+                    topSolutions == null && solutionLimit == 0) ?
+                    new ArrayList<Solution>() : null;
+            if (!propagates(st, -1)) {
+                st.counters.flush();
+            } else if (parallel) {
+                ForkJoinPool.commonPool().invoke(new SearchTask(st, 0));
+            } else {
+                build(st, 0);
+                st.counters.flush();
+            }
+            if (remembered != null && !stopped) {
+                if (reuseResults) {
+                    lastSeeds = seeds;
+                    lastResults = remembered;
+                }
+                store(seeds, remembered);
+            }
+            remembered = null;
+        }
+        elapsedTime = System.currentTimeMillis() - start;
+        metrics.searchEnded();
+    }
 
-        // double start = System.currentTimeMillis();
+    /**
+     * Find a word's ID in the dictionary.
+     * @param word The word to look up.
+     * @param buf A matching word ID buffer.
+     * @return Returns the word's ID, or -1 if it isn't a dictionary word.
+     */
+    private int findId(String word, int[] buf) {
+        if (word.indexOf('.') >= 0) return -1;
+        return (dict.matchIds(word.toCharArray(), buf) > 0) ? buf[0] : -1;
+    }
 
-        // Start the build
-        build(searchRows, 0, len, matches);
+    /**
+     * Answer a search from the results of the last complete search, if
+     * they include every solution.  Adding seed words can only narrow a
+     * search, so when every seed of the last search is still in place, the
+     * solutions now are exactly the last ones that fit the new seeds.
+     * @param seeds The partial word square to search.
+     * @return Returns {@code true} if the solutions were delivered from the
+     * last results, or {@code false} if a search is needed.
+     */
+    private boolean replay(String[] seeds) {
+        String[] last = lastSeeds;
+        if (!reuseResults || last == null) return false;
+        for (int row = 0; row < seeds.length; row++) {
+            if (last[row] != null && !last[row].equals(seeds[row])) return false;
+        }
+        SearchMetrics.Local counters = metrics.local();
+        for (Solution sol : lastResults) {
+            if (stopped) break;
+            if (sol.fits(seeds)) {
+                counters.solution(0);
+                deliver(sol);
+            }
+        }
+        counters.flush();
+        return true;
+    }
 
-        // double elapsed = System.currentTimeMillis() - start;
-        // System.out.println("Completed in " + elapsed / 1000 + " seconds.");
+    /**
+     * Answer a search from the solution store, if it holds the results of
+     * an earlier search of the same partial word square.
+     * @param seeds The partial word square to search.
+     * @return Returns {@code true} if the solutions were delivered from the
+     * store, or {@code false} if a search is needed.
+     */
+    private boolean recall(String[] seeds) {
+        SolutionStore store = solutionStore;
+        if (store == null) return false;
+        List<Solution> stored;
+        try {
+            stored = store.find(seeds, index, score);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+        if (stored == null) return false;
+        SearchMetrics.Local counters = metrics.local();
+        for (int i = 0; i < stored.size() && !stopped; i++) {
+            counters.solution(0);
+            deliver(stored.get(i));
+        }
+        counters.flush();
+        return true;
+    }
+
+    /**
+     * Add the results of a complete search to the solution store, if any.
+     * A store that can't be written only costs the saved time next run, so
+     * errors are reported but don't fail the search.
+     * @param seeds The partial word square searched.
+     * @param solutions Every solution found.
+     */
+    private void store(String[] seeds, ArrayList<Solution> solutions) {
+        SolutionStore store = solutionStore;
+        if (store == null) return;
+        try {
+            store.add(seeds, solutions);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
     }
 
-    private void build(int[] searchRows, int pos, int len, Iterable<String>[] matches) {
+    private void build(SearchState st, int pos) {
+        int[] searchRows = st.searchRows;
         if (pos <= searchRows.length) {
-            String pattern = getPattern(searchRows[pos], len);
-            matches[pos] = dict.matchPattern(pattern);
-            Iterator<String> it = matches[pos].iterator();
-            while (it.hasNext()) {
-                squareWords[searchRows[pos]] = it.next();
+            selectRow(st, pos);
+            int row = searchRows[pos];
+            int[] ids = st.idBuffer(pos);
+            long start = st.counters.sampleTime();
+            int count = st.match(row, ids);
+            st.counters.match(count, start);
+            if (st.domains != null) st.domains.save(pos);
+            for (int i = 0; i < count && !stopped; i++) {
+                st.place(row, ids[i]);
+                st.counters.node(pos);
                 if (pos == searchRows.length - 1) {
-                    Solution sol = new Solution(squareWords.clone(), score);
-                    solutionList.add(sol);
+                    start = st.counters.sampleTime();
+                    Solution sol = new Solution(st.source, st.rowIds, st.len);
+                    deliver(sol);
+                    st.counters.solution(start);
+                } else {
+                    if (canImprove(st) && propagates(st, row) &&
+                            (!forwardChecking || openRowsMatch(st, pos + 1))) {
+                        build(st, pos + 1);
+                    }
+                    if (st.domains != null) st.domains.restore(pos);
                 }
-                else build(searchRows, pos + 1, len, matches);
             }
-            squareWords[searchRows[pos]] = null;
+            st.clear(row);
         }
     }
 
+    /**
+     * Pass a found solution to the current sink and stop the search if the
+     * sink declines more or the solution limit is reached.  Deliveries are
+     * serialized so the sink never sees concurrent calls.
+     * @param sol The solution to deliver.
+     */
+    private void deliver(Solution sol) {
+        synchronized (deliveryLock) {
+            if (stopped) return;
+            delivered++;
+            if (remembered != null) {
+                if (remembered.size() < MAX_REMEMBERED) remembered.add(sol);
+                else remembered = null;
+            }
+            if (!solutionSink.accept(sol) ||
+                    (solutionLimit > 0 && delivered >= solutionLimit)) {
+                stopped = true;
+            }
+        }
+    }
+
+    /**
+     * Check whether any completion of a partial word square could still
+     * enter the top-K collector.  Always {@code true} when no top-K search
+     * is in progress.
+     * @param st The search state holding the partial word square.
+     * @return Returns {@code false} if the branch can be skipped.
+     */
+    private boolean canImprove(SearchState st) {
+        TopSolutions top = topSolutions;
+        if (top == null) return true;
+        long start = st.counters.sampleTime();
+        long total = 0;
+        long low = Long.MAX_VALUE;
+        int open = 0;
+        for (int i = 0; i < st.len; i++) {
+            if (st.square[i] == null) {
+                open++;
+            } else {
+                long points = score.getWordScore(st.square[i]);
+                total += points;
+                if (points < low) low = points;
+            }
+        }
+        long bound = top.getMetric().upperBound(total, low, open,
+                score.getMaxScore(st.len), st.len);
+        boolean improves = top.canImprove(bound);
+        st.counters.bound(improves, start);
+        return improves;
+    }
+
+    /**
+     * Narrow the letter sets of a search state after a placement, if
+     * propagation is on.
+     * @param st The search state.
+     * @param row The row just filled, or -1 to narrow the sets of the
+     *            starting partial word square.
+     * @return Returns {@code false} if some cell has no possible letter
+     * left, so the branch can be skipped.
+     */
+    private boolean propagates(SearchState st, int row) {
+        LetterDomains domains = st.domains;
+        if (domains == null) return true;
+        long start = st.counters.sampleTime();
+        boolean consistent = (row < 0) ? domains.propagate() : domains.place(row, st.square[row]);
+        st.counters.propagation(consistent, start);
+        return consistent;
+    }
+
+    /**
+     * Move the open row chosen by the ordering strategy to the current
+     * search position.
+     * @param st The search state.
+     * @param pos The current search position.
+     */
+    private void selectRow(SearchState st, int pos) {
+        int[] searchRows = st.searchRows;
+        int next = rowOrder.select(searchRows, pos,
+                rowOrder.counts(st.candidates, st.estimates));
+        int row = searchRows[next];
+        searchRows[next] = searchRows[pos];
+        searchRows[pos] = row;
+    }
+
+    /**
+     * Check that each open row from a given search position onward still
+     * has at least one matching word bank word.
+     * @param st The search state.
+     * @param from The first search position to check.
+     * @return Returns {@code true} if every remaining open row can still be
+     * filled.  Otherwise, returns {@code false}.
+     */
+    private boolean openRowsMatch(SearchState st, int from) {
+        long start = st.counters.sampleTime();
+        boolean match = true;
+        for (int i = from; i < st.searchRows.length && match; i++) {
+            match = index.hasMatch(st.patterns[st.searchRows[i]]);
+        }
+        st.counters.forwardCheck(match, start);
+        return match;
+    }
+
     public String getPattern(int pos, int len) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < len; i++) {
@@ -125,12 +619,379 @@ public class WordSquare {
         return sb.toString();
     }
 
+    /**
+     * {@code SearchState} holds one thread's view of a search: the partial
+     * word square, the search order and reusable buffers, so that expanding
+     * a search node allocates nothing.  The pattern for every row is kept up
+     * to date as words are placed and cleared, at a cost of one letter per
+     * row, so no pattern is ever rebuilt from the whole square.
+     */
+    private class SearchState {
+        // The partial word square; open rows are null.
+        private final String[] square;
+        // The open rows, in search order.
+        private final int[] searchRows;
+        // The word square size.
+        private final int len;
+        // Letter statistics for words of this size.
+        private final LengthStats stats;
+        // The current pattern for each row: patterns[row][i] is the letter
+        // that row i puts in column row, or '.' if row i is open.
+        private final char[][] patterns;
+        // A matching word ID buffer for each search position, made on demand.
+        private final int[][] ids;
+        // The word ID in each row, or -1 for an open row or a seed word
+        // that isn't in the dictionary.
+        private final int[] rowIds;
+        // What every solution found from this state shares.
+        private final Solution.Source source;
+        // The possible letters of each cell, or null if propagation is off.
+        private LetterDomains domains;
+        // The letter sets of one row, for letter-set queries.
+        private final long[] rowSets;
+        // This thread's search counters.
+        private final SearchMetrics.Local counters = metrics.local();
+        // Counts the candidates for an open row under the partial square,
+        // or under the letter sets when they are tracked.
+        private final IntUnaryOperator candidates = new IntUnaryOperator() {
+            @Override
+            public int applyAsInt(int row) {
+                if (domains != null) return index.countLetterSets(domains.getRow(row, rowSets));
+                return index.countPattern(patterns[row]);
+            }
+        };
+        // Estimates the candidates for an open row from letter frequencies.
+        private final IntUnaryOperator estimates = new IntUnaryOperator() {
+            @Override
+            public int applyAsInt(int row) {
+                return stats.estimateMatches(patterns[row]);
+            }
+        };
+
+        SearchState(String[] square, int[] searchRows, int len, Solution.Source source,
+                    LengthStats stats) {
+            this.square = square;
+            this.searchRows = searchRows;
+            this.len = len;
+            this.source = source;
+            this.stats = stats;
+            rowIds = new int[len];
+            Arrays.fill(rowIds, -1);
+            patterns = new char[len][len];
+            for (int row = 0; row < len; row++) {
+                for (int i = 0; i < len; i++) {
+                    patterns[row][i] = (square[i] == null) ? '.' : square[i].charAt(row);
+                }
+            }
+            ids = new int[searchRows.length][];
+            rowSets = new long[len];
+        }
+
+        /**
+         * Find the candidate words for an open row.  When letter sets are
+         * tracked, only words that fit every cell's set are returned, so
+         * words that would fail the sets at once are never tried.
+         * @param row The word square position.
+         * @param ids A buffer to receive the matching IDs.
+         * @return Returns the number of IDs written to {@code ids}.
+         */
+        int match(int row, int[] ids) {
+            if (domains != null) return index.matchLetterSets(domains.getRow(row, rowSets), ids);
+            return dict.matchIds(patterns[row], ids);
+        }
+
+        /**
+         * Put a word in an open row and update every row's pattern.
+         * @param row The word square position.
+         * @param id The ID of the word to place.
+         */
+        void place(int row, int id) {
+            String word = index.getWord(len, id);
+            square[row] = word;
+            rowIds[row] = id;
+            for (int j = 0; j < len; j++) {
+                patterns[j][row] = word.charAt(j);
+            }
+        }
+
+        /**
+         * Open a row again and update every row's pattern.
+         * @param row The word square position.
+         */
+        void clear(int row) {
+            square[row] = null;
+            rowIds[row] = -1;
+            for (int j = 0; j < len; j++) {
+                patterns[j][row] = '.';
+            }
+        }
+
+        /**
+         * Get the matching word ID buffer for a search position.
+         * @param pos The search position.
+         * @return Returns a buffer large enough for any pattern.
+         */
+        int[] idBuffer(int pos) {
+            if (ids[pos] == null) ids[pos] = new int[dict.getWordCount(len)];
+            return ids[pos];
+        }
+
+        /**
+         * Make an independent copy of this state for another thread.
+         * @return Returns a new state with the same square and search order.
+         */
+        SearchState copy() {
+            SearchState st = new SearchState(square.clone(), searchRows.clone(), len, source,
+                    stats);
+            System.arraycopy(rowIds, 0, st.rowIds, 0, len);
+            if (domains != null) st.domains = domains.copy(st.counters);
+            return st;
+        }
+    }
+
+    /**
+     * {@code SearchTask} searches the subtree below one partial word square
+     * in parallel.  Near the top of the tree each candidate word for the
+     * next row becomes its own task with its own copy of the search state,
+     * so tasks never share mutable state.  Deeper in the tree the task
+     * finishes its subtree with the sequential {@code build}.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SearchState st;
+        private final int pos;
+
+        SearchTask(SearchState st, int pos) {
+            this.st = st;
+            this.pos = pos;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped) return;
+            int[] searchRows = st.searchRows;
+            if (pos >= PARALLEL_DEPTH || pos >= searchRows.length - 1) {
+                build(st, pos);
+                st.counters.flush();
+                return;
+            }
+            selectRow(st, pos);
+            int row = searchRows[pos];
+            int[] ids = new int[dict.getWordCount(st.len)];
+            long start = st.counters.sampleTime();
+            int count = st.match(row, ids);
+            st.counters.match(count, start);
+            ArrayList<SearchTask> tasks = new ArrayList<SearchTask>();
+            for (int i = 0; i < count; i++) {
+                st.counters.node(pos);
+                SearchState child = st.copy();
+                child.place(row, ids[i]);
+                if (canImprove(child) && propagates(child, row) &&
+                        (!forwardChecking || openRowsMatch(child, pos + 1))) {
+                    tasks.add(new SearchTask(child, pos + 1));
+                } else {
+                    child.counters.flush();
+                }
+            }
+            st.counters.flush();
+            invokeAll(tasks);
+        }
+    }
+
     /*------------------------------------------------
     *
     * Additional methods to interact with member variables.
     *
     * ------------------------------------------------*/
 
+    /**
+     * Turn forward checking on or off for subsequent searches.  With forward
+     * checking on, the search backtracks as soon as a placement leaves any
+     * open row without a match, instead of when it reaches that row.  The
+     * set of solutions found is the same either way.
+     * @param forwardChecking {@code true} to enable forward checking.
+     */
+    public void setForwardChecking(boolean forwardChecking) {
+        this.forwardChecking = forwardChecking;
+    }
+
+    /**
+     * Check whether forward checking is enabled.
+     * @return Returns {@code true} if forward checking is enabled.
+     */
+    public boolean isForwardChecking() {
+        return forwardChecking;
+    }
+
+    /**
+     * Turn letter-set propagation on or off for subsequent searches.  With
+     * propagation on, the search tracks the letters each cell can still
+     * hold, narrows them after every placement until every open row agrees
+     * with them, and backtracks as soon as any cell has no letter left.
+     * This cuts more branches than forward checking, at more cost per word
+     * placed.  The counts are in {@code getMetrics}.  The set of solutions
+     * found is the same either way.  Propagation needs a dictionary with at
+     * most 64 distinct letters, and is skipped otherwise.
+     * @param propagation {@code true} to enable propagation.
+     */
+    public void setPropagation(boolean propagation) {
+        this.propagation = propagation;
+    }
+
+    /**
+     * Check whether letter-set propagation is enabled.
+     * @return Returns {@code true} if propagation is enabled.
+     */
+    public boolean isPropagation() {
+        return propagation;
+    }
+
+    /**
+     * Turn parallel search on or off for subsequent searches.  In parallel
+     * mode the candidates for the first open rows are split into fork/join
+     * tasks on the common pool.  Solutions are the same as a sequential
+     * search but are not collected in any particular order.
+     * @param parallel {@code true} to enable parallel search.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Check whether parallel search is enabled.
+     * @return Returns {@code true} if parallel search is enabled.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Set the strategy for choosing which open row to fill next in
+     * subsequent searches.  The set of solutions found is the same for
+     * every strategy; only the amount of work differs.  In parallel mode the
+     * strategy is called from several threads at once and must be
+     * thread-safe.
+     * @param rowOrder The row ordering strategy to use.
+     */
+    public void setRowOrder(RowOrder rowOrder) {
+        this.rowOrder = rowOrder;
+    }
+
+    /**
+     * Get the strategy for choosing which open row to fill next.
+     * @return Returns the current row ordering strategy.
+     */
+    public RowOrder getRowOrder() {
+        return rowOrder;
+    }
+
+    /**
+     * Get the number of words placed during the most recent search.
+     * @return Returns the number of search nodes expanded.
+     */
+    public long getNodeCount() {
+        return metrics.getNodeCount();
+    }
+
+    /**
+     * Turn reuse of earlier results on or off.  When on, a search whose
+     * partial word square keeps every word of the last complete search is
+     * answered by filtering that search's solutions, without searching.
+     * Results are the same either way.  Off by default: when on, the last
+     * search's solutions are kept, up to about 16 MB of them, even when
+     * they were streamed to a sink.
+     * @param reuseResults {@code true} to reuse results.
+     */
+    public void setReuseResults(boolean reuseResults) {
+        this.reuseResults = reuseResults;
+        if (!reuseResults) {
+            lastSeeds = null;
+            lastResults = null;
+        }
+    }
+
+    /**
+     * Check whether earlier results are reused.
+     * @return Returns {@code true} if reuse is on.
+     */
+    public boolean isReuseResults() {
+        return reuseResults;
+    }
+
+    /**
+     * Set the store of earlier complete results.  A search of a partial
+     * word square already in the store is answered from it without
+     * searching, and the results of other complete searches are added to
+     * it.  The store's word IDs refer to the word bank, so it should only be
+     * set on a {@code WordSquare} searching the default dictionary.
+     * @param solutionStore The store, or {@code null} for none.
+     */
+    public void setSolutionStore(SolutionStore solutionStore) {
+        this.solutionStore = solutionStore;
+    }
+
+    /**
+     * Get the store of earlier complete results.
+     * @return Returns the store, or {@code null} if none is set.
+     */
+    public SolutionStore getSolutionStore() {
+        return solutionStore;
+    }
+
+    /**
+     * Get the stored results for the current partial word square without
+     * searching.  Solutions are read from the store as they are asked for,
+     * so any part of a large result can be shown without loading all of it.
+     * @return Returns a read-only list of the stored solutions, ranked best
+     * first by {@code SolutionStore.ORDER}, or {@code null} if there's no store, the partial word
+     * square isn't stored or the store can't be read.
+     */
+    public List<Solution> findStoredSolutions() {
+        SolutionStore store = solutionStore;
+        if (store == null) return null;
+        try {
+            return store.find(squareWords.clone(), index, score);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Get the counters and timings of the most recent search.  They are
+     * updated live while a search runs.
+     * @return Returns the search metrics.
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the duration of the most recent search.
+     * @return Returns the elapsed search time in milliseconds.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Get the letter statistics of the dictionary's words of one length.
+     * @param len The word length.
+     * @return Returns the statistics for that length.
+     */
+    public LengthStats getLengthStats(int len) {
+        return lengthStats[len];
+    }
+
+    /**
+     * Get the dictionary this {@code WordSquare} searches.
+     * @return Returns the word bank dictionary.
+     */
+    public WordDictionary getDictionary() {
+        return dict;
+    }
+
     /**
      * Get the partial word square composed of user-input words.
      * @return Returns a six-position array of {@code String}s.  Some
@@ -0,0 +1,336 @@
+package WordSquare;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@code WordSquareBatch} runs word square searches from the command line
+ * without the GUI, and never loads a JavaFX class.  One dictionary is
+ * loaded and shared by every search.
+ * <p>
+ * Each search is a list of {@code position:word} seeds, with positions
+ * counted from 1 as in the GUI, e.g. {@code 1:heart 5:ember}.  Searches
+ * are read from the command line (one per argument group separated by
+ * {@code ;}) or from an input file with one search per line.  Solutions are
+ * written as one line each: the square words separated by commas, then the
+ * total, low and average scores, separated by tabs.  Each search's
+ * solutions follow a {@code #} line repeating its seeds.
+ * <pre>
+ * java -cp WordSquare.jar WordSquare.WordSquareBatch [options] [seeds...]
+ *   -i FILE     read searches from FILE, one per line
+ *   -o FILE     write results to FILE instead of standard output
+ *   -t N        run N searches at once (default 1)
+ *   -n N        stop each search after N solutions
+ *   -k N        keep only the best N solutions of each search
+ *   -r METRIC   rank -k results by total, low or average (default low)
+ *   -u          report each square once, even if several searches find it
+ *   -s FILE     as -u, and also skip squares recorded in FILE by earlier
+ *               runs, adding the new ones to it
+ *   -c FILE     answer searches solved by earlier runs from the results
+ *               stored in FILE, and store the results of new ones
+ *   -d NAME     search with the dawg, ternary or snapshot dictionary
+ *               (default snapshot)
+ *   -f          check every open row still has a match after each word
+ *   -p          narrow each cell's possible letters after each word
+ * </pre>
+ */
+public class WordSquareBatch {
+    private final WordDictionary dict;
+    private final long limit;
+    private final int top;
+    private final ScoreMetric metric;
+    // The squares already reported, or null to report duplicates.
+    private SeenSolutions seen;
+    // The store of earlier results, or null to search every time.
+    private SolutionStore store;
+    private boolean forwardChecking = false;
+    private boolean propagation = false;
+    // Each worker thread reuses one WordSquare for all of its searches.
+    private final ThreadLocal<WordSquare> squares = new ThreadLocal<WordSquare>() {
+        @Override
+        protected WordSquare initialValue() {
+            WordSquare ws = (dict == null) ? new WordSquare() : new WordSquare(dict);
+            ws.setSolutionStore(store);
+            ws.setForwardChecking(forwardChecking);
+            ws.setPropagation(propagation);
+            return ws;
+        }
+    };
+
+    /**
+     * Create a batch runner.
+     * @param dict The dictionary shared by all searches, or {@code null} for
+     *             the default dictionary.
+     * @param limit The most solutions to report per search, or {@code 0}
+     *              for no limit.
+     * @param top The number of best solutions to keep per search, or
+     *            {@code 0} to report every solution as it is found.
+     * @param metric The metric to rank by when {@code top} is set.
+     */
+    public WordSquareBatch(WordDictionary dict, long limit, int top, ScoreMetric metric) {
+        this.dict = dict;
+        this.limit = limit;
+        this.top = top;
+        this.metric = metric;
+    }
+
+    public static void main(String[] args) {
+        String in = null;
+        String out = null;
+        int threads = 1;
+        long limit = 0;
+        int top = 0;
+        ScoreMetric metric = ScoreMetric.LOW;
+        boolean unique = false;
+        String seenFile = null;
+        String storeFile = null;
+        boolean forwardChecking = false;
+        boolean propagation = false;
+        ArrayList<String> searches = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+
+        // Read options and command-line searches.
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-i")) in = args[++i];
+                else if (arg.equals("-o")) out = args[++i];
+                else if (arg.equals("-t")) threads = Integer.parseInt(args[++i]);
+                else if (arg.equals("-n")) limit = Long.parseLong(args[++i]);
+                else if (arg.equals("-k")) top = Integer.parseInt(args[++i]);
+                else if (arg.equals("-r")) metric = ScoreMetric.valueOf(args[++i].toUpperCase());
+                else if (arg.equals("-u")) unique = true;
+                else if (arg.equals("-s")) seenFile = args[++i];
+                else if (arg.equals("-c")) storeFile = args[++i];
+                else if (arg.equals("-d")) System.setProperty(WordSquare.DICTIONARY_PROPERTY, args[++i]);
+                else if (arg.equals("-f")) forwardChecking = true;
+                else if (arg.equals("-p")) propagation = true;
+                else if (arg.equals(";")) {
+                    searches.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(arg).append(' ');
+                }
+            }
+            // Check -d or -Dwordsquare.dictionary before the dictionary loads.
+            String name = System.getProperty(WordSquare.DICTIONARY_PROPERTY, "");
+            if (!WordSquare.isDictionaryName(name)) {
+                throw new IllegalArgumentException("unknown dictionary " + name +
+                        "; use dawg, ternary or snapshot");
+            }
+        } catch (RuntimeException ex) {
+            System.err.println("Invalid arguments: " + ex.getMessage());
+            System.exit(2);
+        }
+        if (current.length() > 0) searches.add(current.toString());
+
+        try {
+            if (in != null) {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(in), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().length() > 0) searches.add(line);
+                }
+                reader.close();
+            }
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    (out == null) ? System.out : new FileOutputStream(out), "UTF-8"));
+            WordSquareBatch batch = new WordSquareBatch(null, limit, top, metric);
+            if (seenFile != null) batch.setSeenSolutions(new SeenSolutions(new File(seenFile)));
+            else if (unique) batch.setSeenSolutions(new SeenSolutions());
+            if (storeFile != null) batch.setSolutionStore(new SolutionStore(new File(storeFile)));
+            batch.setForwardChecking(forwardChecking);
+            batch.setPropagation(propagation);
+            boolean completed = batch.run(searches, threads, writer);
+            writer.close();
+            if (batch.seen != null) batch.seen.close();
+            if (batch.store != null) batch.store.close();
+            if (!completed) System.exit(1);
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Report only squares not already in a set, adding each one reported.
+     * @param seen The squares already reported, or {@code null} to report
+     *             every square found.
+     */
+    public void setSeenSolutions(SeenSolutions seen) {
+        this.seen = seen;
+    }
+
+    /**
+     * Answer searches from a store of earlier results where possible, and
+     * add the results of other complete searches to it.  Must be set before
+     * {@code run}.
+     * @param store The store, or {@code null} to search every time.  Only
+     *              used with the default dictionary.
+     */
+    public void setSolutionStore(SolutionStore store) {
+        this.store = (dict == null) ? store : null;
+    }
+
+    /**
+     * Turn forward checking on or off for every search.  Must be set before
+     * {@code run}.
+     * @param forwardChecking {@code true} to enable forward checking.
+     */
+    public void setForwardChecking(boolean forwardChecking) {
+        this.forwardChecking = forwardChecking;
+    }
+
+    /**
+     * Turn letter-set propagation on or off for every search.  Must be set
+     * before {@code run}.
+     * @param propagation {@code true} to enable propagation.
+     */
+    public void setPropagation(boolean propagation) {
+        this.propagation = propagation;
+    }
+
+    /**
+     * Run a list of searches and write their results in input order.
+     * @param searches The searches, each a list of {@code position:word}
+     *                 seeds separated by spaces.
+     * @param threads The number of searches to run at once.
+     * @param writer The destination for results.
+     * @return Returns {@code true} if every search completed, or
+     * {@code false} if any failed.  The results of the others are still
+     * written.
+     */
+    public boolean run(ArrayList<String> searches, int threads, final PrintWriter writer) {
+        if (threads <= 1) {
+            // Write straight through, so memory doesn't grow with results.
+            boolean completed = true;
+            for (String search : searches) {
+                try {
+                    search(search, writer);
+                } catch (RuntimeException ex) {
+                    // Report this search and keep running the rest.
+                    System.err.println("Search failed: " + search.trim());
+                    ex.printStackTrace();
+                    completed = false;
+                }
+                writer.flush();
+            }
+            return completed;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+        for (final String search : searches) {
+            results.add(pool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    StringWriter buffer = new StringWriter();
+                    PrintWriter out = new PrintWriter(buffer);
+                    search(search, out);
+                    out.flush();
+                    return buffer.toString();
+                }
+            }));
+        }
+        boolean completed = true;
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    writer.print(results.get(i).get());
+                } catch (ExecutionException ex) {
+                    // Report this search and keep the results of the rest.
+                    System.err.println("Search failed: " + searches.get(i).trim());
+                    ex.getCause().printStackTrace();
+                    completed = false;
+                }
+                writer.flush();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            completed = false;
+        } finally {
+            pool.shutdownNow();
+        }
+        return completed;
+    }
+
+    /**
+     * Run one search on this thread's {@code WordSquare} and write its
+     * results.
+     * @param search A list of {@code position:word} seeds.
+     * @param out The destination for results.
+     */
+    private void search(String search, final PrintWriter out) {
+        WordSquare ws = squares.get();
+        ws.clearSquareWords();
+        ws.clearSolutions();
+        out.println("# " + search.trim());
+
+        // Place the seed words.
+        for (String seed : search.trim().split("\\s+")) {
+            int colon = seed.indexOf(':');
+            try {
+                int pos = Integer.parseInt(seed.substring(0, colon)) - 1;
+                String word = seed.substring(colon + 1).toLowerCase();
+                if (pos < 0 || pos >= word.length() || !ws.wordFits(word, pos)) {
+                    out.println("# skipped: " + seed + " doesn't fit");
+                    return;
+                }
+                ws.setWord(word, pos);
+            } catch (RuntimeException ex) {
+                out.println("# skipped: bad seed " + seed);
+                return;
+            }
+        }
+
+        // Search, writing solutions as they arrive.
+        if (top > 0) {
+            ArrayList<Solution> best = ws.buildTopSolutions(metric, top);
+            for (Solution sol : best) {
+                try {
+                    if (seen == null || seen.add(sol)) write(sol, out);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        } else {
+            // Count the limit here, so squares skipped as seen don't count.
+            SolutionSink sink = new SolutionSink() {
+                long written = 0;
+
+                @Override
+                public boolean accept(Solution solution) {
+                    write(solution, out);
+                    return limit == 0 || ++written < limit;
+                }
+            };
+            ws.buildSolutions((seen == null) ? sink : seen.filter(sink));
+        }
+    }
+
+    private static void write(Solution sol, PrintWriter out) {
+        String[] words = sol.getSolutionWords();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words.length && words[i] != null; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(words[i]);
+        }
+        sb.append('\t').append(sol.getTotalScore())
+                .append('\t').append(sol.getLowScore())
+                .append('\t').append(sol.getAverageScore());
+        out.println(sb);
+    }
+}
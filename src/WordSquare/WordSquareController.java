@@ -1,27 +1,45 @@
 package WordSquare;
 
-import javafx.application.Platform;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A JavaFX controller class to provide a GUI for the operation of
  * {@code WordSquare}.
  */
 public class WordSquareController {
-    protected WordSquare ws = new WordSquare();
+    // The results of earlier searches, kept between runs, or null if the
+    // store file can't be opened.
+    private static final SolutionStore solutionStore = openSolutionStore();
+    protected WordSquare ws = newWordSquare();
     // A local copy of solution list for reordering.
     protected static ArrayList<Solution> solutionList =
             new ArrayList<Solution>();
+    // A stored result being shown in place of the solution list, or null.
+    // It is read from the store as it is paged through.
+    private List<Solution> storedSolutions;
     // The current solution to display.
     private int solPos = 0;
     // A local copy of squareWords for the display of incomplete word squares.
@@ -40,6 +58,73 @@ public class WordSquareController {
     private final ObservableList<DisplayRow> displayText =
             FXCollections.observableArrayList(r1, r2, r3, r4, r5, r6);
 
+    /*------------------------------------------------
+     *
+     * Background search.
+     *
+     -------------------------------------------------*/
+
+    // How often, in milliseconds, search progress is shown in the GUI.
+    private static final double PROGRESS_INTERVAL = 200;
+    // Solutions found by the running search that the GUI hasn't shown yet.
+    // Each search gets its own queue, so a cancelled search can't leak
+    // solutions into the next one.
+    private ConcurrentLinkedQueue<Solution> foundSolutions =
+            new ConcurrentLinkedQueue<Solution>();
+    // The time the running search started, from System.nanoTime().
+    private long searchStart;
+    // Runs searches one at a time on a background thread, so a new search
+    // never starts before a cancelled one has finished unwinding.
+    private final ExecutorService searchExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "WordSquare search");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    // Searches the current partial word square off the JavaFX thread.
+    private final Service<Void> searchService = new Service<Void>() {
+        @Override
+        protected Task<Void> createTask() {
+            final WordSquare search = ws;
+            final ConcurrentLinkedQueue<Solution> found = foundSolutions;
+            return new Task<Void>() {
+                @Override
+                protected Void call() {
+                    search.buildSolutions(new SolutionSink() {
+                        @Override
+                        public boolean accept(Solution solution) {
+                            found.add(solution);
+                            return !isCancelled();
+                        }
+                    });
+                    return null;
+                }
+
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    // Stop the search itself, not just the Task state.
+                    // A Task that already ended must not cancel the next.
+                    boolean cancelled = super.cancel(mayInterruptIfRunning);
+                    if (cancelled) {
+                        search.cancel();
+                    }
+                    return cancelled;
+                }
+            };
+        }
+    };
+    // Moves found solutions into the GUI at a fixed rate while searching.
+    private final Timeline progressTimer = new Timeline(
+            new KeyFrame(Duration.millis(PROGRESS_INTERVAL), new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent event) {
+                    showSearchProgress();
+                }
+            }));
+
     /*------------------------------------------------
      *
      * Make JavaFX fxml elements available as class members.
@@ -67,6 +152,8 @@ public class WordSquareController {
     @FXML public Button sortButton;
     @FXML public AnchorPane searchPane;
     @FXML public Button clearButton;
+    @FXML public Button cancelButton;
+    @FXML public Label searchStatus;
 
 
     /**
@@ -97,6 +184,20 @@ public class WordSquareController {
         textOut.setItems(displayText);
         squareWords = ws.getSquareWords();
         updateDisplay(squareWords);
+
+        // Set up the background search.
+        progressTimer.setCycleCount(Animation.INDEFINITE);
+        searchService.setExecutor(searchExecutor);
+        EventHandler<WorkerStateEvent> searchDone = new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                finishSearch();
+            }
+        };
+        searchService.setOnSucceeded(searchDone);
+        searchService.setOnCancelled(searchDone);
+        searchService.setOnFailed(searchDone);
+        cancelButton.setDisable(true);
     }
 
     /*------------------------------------------------
@@ -111,9 +212,12 @@ public class WordSquareController {
      * down menu.
      */
     public void setSquareWord() {
+        cancelSearch();
+
         // Clear previous results, if any
-        if (solutionList.size() > 0) {
+        if (solutionList.size() > 0 || storedSolutions != null) {
             solutionList.clear();
+            storedSolutions = null;
             ws.clearSquareWords();
             ws.clearSolutions();
         }
@@ -162,12 +266,16 @@ public class WordSquareController {
     }
 
     /**
-     * Initiate the search process.
+     * Initiate the search process on a background thread.  Solutions are
+     * shown as they are found and sorted when the search ends.
      */
     public void buildWordSquares() {
+        cancelSearch();
+
         // Clear previous results, if any
-        if (solutionList.size() > 0) {
+        if (solutionList.size() > 0 || storedSolutions != null) {
             solutionList.clear();
+            storedSolutions = null;
             ws.clearSolutions();
             ws.clearSquareWords();
         }
@@ -186,11 +294,34 @@ public class WordSquareController {
                 ws.setWord(null, i);
             }
         }
+        // Show the stored result instead, if this square was solved before.
+        long start = System.nanoTime();
+        List<Solution> stored = ws.findStoredSolutions();
+        if (stored != null) {
+            storedSolutions = stored;
+            updateSolutionCount();
+            searchStatus.setText(String.format("Stored. %,d solutions (%,.1f ms)",
+                    stored.size(), (System.nanoTime() - start) / 1e6));
+            sortSolutions();
+            return;
+        }
         // Call WordSquare to start the search.
-        ws.buildAllSolutions();
-        solutionList = ws.getSolutionList();
-        updateSolutionCount();
-        sortSolutions();
+        foundSolutions = new ConcurrentLinkedQueue<Solution>();
+        searchStart = System.nanoTime();
+        searchStatus.setText("Searching...");
+        cancelButton.setDisable(false);
+        progressTimer.play();
+        ws.resetCancel();
+        searchService.restart();
+    }
+
+    /**
+     * Stop the running search, if any.  Solutions found so far are kept.
+     */
+    public void cancelSearch() {
+        if (searchService.isRunning()) {
+            searchService.cancel();
+        }
     }
 
     /**
@@ -198,9 +329,9 @@ public class WordSquareController {
      * end of list is reached.
      */
     public void showNextSolution() {
-        if (solutionList.size() > 0) {
+        if (shownSolutions().size() > 0) {
             solPos++;
-            if (solPos >= solutionList.size()) {
+            if (solPos >= shownSolutions().size()) {
                 solPos = 0;
             }
             showSolution();
@@ -212,10 +343,10 @@ public class WordSquareController {
      * when index zero is reached.
      */
     public void showPreviousSolution() {
-        if (solutionList.size() > 0) {
+        if (shownSolutions().size() > 0) {
             solPos--;
             if (solPos < 0) {
-                solPos = (solutionList.size() - 1);
+                solPos = (shownSolutions().size() - 1);
             }
             showSolution();
         }
@@ -238,10 +369,12 @@ public class WordSquareController {
             }
             // If request is greater than list length,
             // just show the last solution.
-            if (solPosRequest < solutionList.size()) {
+            int size = shownSolutions().size();
+            if (size == 0) return;
+            if (solPosRequest < size) {
                 solPos = solPosRequest;
             } else {
-                solPos = solutionList.size() - 1;
+                solPos = size - 1;
             }
             // Update display with the new solution.
             showSolution();
@@ -251,6 +384,41 @@ public class WordSquareController {
         }
     }
 
+    /**
+     * Get the solutions being shown: a stored result, or else the solution
+     * list.
+     * @return Returns the list of solutions being shown.
+     */
+    private List<Solution> shownSolutions() {
+        return (storedSolutions != null) ? storedSolutions : solutionList;
+    }
+
+    /**
+     * Make a {@code WordSquare} that answers searches from the solution
+     * store, or by narrowing the last search as words are added, when it
+     * can.
+     * @return Returns the new {@code WordSquare}.
+     */
+    private static WordSquare newWordSquare() {
+        WordSquare ws = new WordSquare();
+        ws.setReuseResults(true);
+        ws.setSolutionStore(solutionStore);
+        return ws;
+    }
+
+    /**
+     * Open the default solution store.
+     * @return Returns the store, or {@code null} if it can't be opened.
+     */
+    private static SolutionStore openSolutionStore() {
+        try {
+            return SolutionStore.open();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Show the popup window scene with a custom message.
      * @param text The message to display.
@@ -300,7 +468,9 @@ public class WordSquareController {
      * and reset the GUI elements.
      */
     public void clearAll() {
-        ws = new WordSquare();
+        cancelSearch();
+        storedSolutions = null;
+        ws = newWordSquare();
         clearLocalSquareWords();
         solutionList.clear();
         updateDisplay(squareWords);
@@ -311,20 +481,65 @@ public class WordSquareController {
     }
 
     /**
-     * Called by {@code SearchWatcher} when new solutions are found.
+     * Show the current number of solutions.  Called as new solutions
+     * are found.
      */
     public void updateSolutionCount() {
         // Get the current number of solutions and update the GUI.
-        int size = solutionList.size();
+        int size = shownSolutions().size();
         totalSol.setText(Integer.toString(size));
     }
 
+    /**
+     * Move newly found solutions into the solution list and show the
+     * solution count and search rate.  Runs on the JavaFX thread.
+     */
+    private void showSearchProgress() {
+        boolean wasEmpty = solutionList.isEmpty();
+        Solution sol;
+        while ((sol = foundSolutions.poll()) != null) {
+            solutionList.add(sol);
+        }
+        updateSolutionCount();
+        if (wasEmpty && !solutionList.isEmpty()) {
+            solPos = 0;
+            showSolution();
+        }
+        long nodes = ws.getNodeCount();
+        double seconds = (System.nanoTime() - searchStart) / 1e9;
+        searchStatus.setText(String.format("%,d nodes (%,.0f/s)",
+                nodes, (seconds > 0) ? nodes / seconds : 0));
+    }
+
+    /**
+     * Show the final results once the background search ends, whether it
+     * completed, was cancelled or failed.
+     */
+    private void finishSearch() {
+        progressTimer.stop();
+        showSearchProgress();
+        cancelButton.setDisable(true);
+        switch (searchService.getState()) {
+            case CANCELLED:
+                searchStatus.setText("Cancelled. " + searchStatus.getText());
+                break;
+            case FAILED:
+                searchStatus.setText("Search failed.");
+                Throwable ex = searchService.getException();
+                if (ex != null) ex.printStackTrace();
+                break;
+            default:
+                searchStatus.setText("Done. " + searchStatus.getText());
+        }
+        sortSolutions();
+    }
+
     /**
      * Update the display with a new solution.
      */
     public void showSolution() {
         clearLocalSquareWords();
-        Solution sol = solutionList.get(solPos);
+        Solution sol = shownSolutions().get(solPos);
         squareWords = sol.getSolutionWords();
         updateDisplay(squareWords);
         solPosDisplay.setText(Integer.toString(solPos + 1));
@@ -352,6 +567,20 @@ public class WordSquareController {
      * by the {@code sortStyle} dropdown menu.
      */
     public void sortSolutions() {
+        if (storedSolutions != null) {
+            // Stored results are already ranked by one metric, in the same
+            // order as the sort styles.  Any other ranking needs them all
+            // in memory.
+            if (sortStyle.getSelectionModel().getSelectedIndex() == SolutionStore.ORDER.ordinal()) {
+                if (storedSolutions.size() > 0) {
+                    solPos = 0;
+                    showSolution();
+                }
+                return;
+            }
+            solutionList.addAll(storedSolutions);
+            storedSolutions = null;
+        }
         // Only perform the sort if there's multiple solutions.
         if (solutionList.size() >= 2) {
             // Get the sort style requested by user.